@@ -0,0 +1,113 @@
+package com.example.searchengine.benchmark;
+
+import com.example.searchengine.model.CandidateSet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比較 ClassificationModel 每個 token 的本地成本 (不含 reranker 網路往返)：
+ * 原本每次呼叫都合併候選清單、序列化整個請求、用 List.contains 判斷類別，
+ * 改為使用預先建好的 CandidateSet。
+ *
+ * 加上 -prof gc 可看到每次呼叫的配置量 (gc.alloc.rate.norm)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassificationBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private List<String> cityList;
+    private List<String> nightMarketList;
+    private CandidateSet candidates;
+
+    // 代替 socket：只計算寫出的成本 (close 後仍可寫，Jackson 的 writeValue 會關閉 stream)
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final String token = "士林";
+    // 最壞情況：最佳匹配在夜市清單的最後面
+    private String bestDocument;
+
+    @Setup
+    public void setup() {
+        cityList = Arrays.asList(
+                "臺北市", "新北市", "基隆市", "新竹市", "桃園市", "新竹縣", "宜蘭縣",
+                "臺中市", "苗栗縣", "彰化縣", "南投縣", "雲林縣",
+                "高雄市", "臺南市", "嘉義市", "嘉義縣", "屏東縣", "澎湖縣",
+                "花蓮縣", "臺東縣", "金門縣", "連江縣");
+        nightMarketList = Corpus.nightMarketNames();
+        bestDocument = nightMarketList.get(nightMarketList.size() - 1);
+
+        Map<String, List<String>> keywordLists = new HashMap<>();
+        keywordLists.put(CandidateSet.COUNTY_CITY, cityList);
+        keywordLists.put(CandidateSet.NIGHT_MARKET_NAME, nightMarketList);
+        candidates = CandidateSet.of(keywordLists);
+    }
+
+    /**
+     * 原本的作法：合併清單 -> 序列化整個請求 -> List.contains 判斷類別
+     */
+    @Benchmark
+    public Object perCallLists() throws Exception {
+        List<String> combinedList = new ArrayList<>();
+        combinedList.addAll(cityList);
+        combinedList.addAll(nightMarketList);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("query", token);
+        requestBody.put("documents", combinedList);
+        // RestTemplate 的 Jackson converter 直接寫進 request body
+        OBJECT_MAPPER.writeValue(sink, requestBody);
+
+        String category;
+        if (cityList.contains(bestDocument)) {
+            category = CandidateSet.COUNTY_CITY;
+        } else if (nightMarketList.contains(bestDocument)) {
+            category = CandidateSet.NIGHT_MARKET_NAME;
+        } else {
+            category = null;
+        }
+        return category;
+    }
+
+    /**
+     * 預先建好的候選清單：只序列化 token，documents 直接寫出預先序列化好的 bytes，類別用 hash 索引
+     */
+    @Benchmark
+    public Object precomputedCandidates() throws Exception {
+        candidates.batchRequest(Collections.singletonList(token)).writeTo(sink);
+        return candidates.categoryOf(bestDocument);
+    }
+
+    /**
+     * 只比較判斷類別：List.contains
+     */
+    @Benchmark
+    public boolean categoryByContains() {
+        return !cityList.contains(bestDocument) && nightMarketList.contains(bestDocument);
+    }
+
+    /**
+     * 只比較判斷類別：hash 索引
+     */
+    @Benchmark
+    public boolean categoryByIndex() {
+        return CandidateSet.NIGHT_MARKET_NAME.equals(candidates.categoryOf(bestDocument));
+    }
+}
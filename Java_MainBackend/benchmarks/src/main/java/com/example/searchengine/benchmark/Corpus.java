@@ -0,0 +1,78 @@
+package com.example.searchengine.benchmark;
+
+import com.example.searchengine.model.Keyword;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 效能測試用的語料：src/main/resources/corpus 底下存好的夜市相關頁面、
+ * 夜市名稱清單 (nightmarket_info.csv 的第一欄)，以及模擬 KeywordExtractionEngine 產生的關鍵字清單。
+ */
+public final class Corpus {
+
+    private Corpus() {
+    }
+
+    /**
+     * 讀取 corpus/ 底下的檔案
+     */
+    public static String load(String name) {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("找不到語料檔案: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 夜市名稱清單 (與 VoyageReRanker 載入的 Night Market Name 相同)
+     */
+    public static List<String> nightMarketNames() {
+        return Arrays.stream(load("nightmarket_names.txt").split("\n"))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 「士林夜市 雞排」這類查詢經過分類後的關鍵字 (含固定附加的 夜市/美食/店家)
+     */
+    public static List<Keyword> shortQuery() {
+        return Arrays.asList(
+                new Keyword("士林夜市", 5.0),
+                new Keyword("雞排", 15.0),
+                new Keyword("夜市", 15.0),
+                new Keyword("美食", 15.0),
+                new Keyword("店家", 15.0)
+        );
+    }
+
+    /**
+     * 較長的查詢 (CKIP 斷詞後較多 token，含英文)
+     */
+    public static List<Keyword> longQuery() {
+        return Arrays.asList(
+                new Keyword("臺北市", 3.0),
+                new Keyword("士林夜市", 5.0),
+                new Keyword("寧夏夜市", 5.0),
+                new Keyword("雞排", 15.0),
+                new Keyword("大腸包小腸", 15.0),
+                new Keyword("蚵仔煎", 15.0),
+                new Keyword("臭豆腐", 15.0),
+                new Keyword("珍珠奶茶", 15.0),
+                new Keyword("stinky tofu", 15.0),
+                new Keyword("夜市", 15.0),
+                new Keyword("美食", 15.0),
+                new Keyword("店家", 15.0)
+        );
+    }
+}
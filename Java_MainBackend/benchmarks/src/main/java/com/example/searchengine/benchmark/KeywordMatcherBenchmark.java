@@ -0,0 +1,81 @@
+package com.example.searchengine.benchmark;
+
+import com.example.searchengine.engine.KeywordMatcher;
+import com.example.searchengine.model.Keyword;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 比較「每個關鍵字各跑一次 regex」(原本 KeywordCounterEngine 的作法)
+ * 與 KeywordMatcher 單次掃描的關鍵字計數效能。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeywordMatcherBenchmark {
+
+    @Param({"food_blog_shilin.html", "ptt_food_thread.html"})
+    public String page;
+
+    @Param({"short", "long"})
+    public String query;
+
+    private String textContent;
+    private List<Keyword> keywords;
+    private KeywordMatcher keywordMatcher;
+
+    @Setup
+    public void setup() {
+        Document doc = Jsoup.parse(Corpus.load(page));
+        textContent = doc.body().text();
+        keywords = "short".equals(query) ? Corpus.shortQuery() : Corpus.longQuery();
+        keywordMatcher = KeywordMatcher.compile(keywords);
+    }
+
+    /**
+     * 原本的作法：每個關鍵字建立一次 Pattern 並掃描整段文字
+     */
+    @Benchmark
+    public Map<Keyword, Integer> regexPerKeyword() {
+        Map<Keyword, Integer> occurrences = new HashMap<>();
+        for (Keyword keyword : keywords) {
+            Pattern pattern = Pattern.compile(Pattern.quote(keyword.getWord()), Pattern.CASE_INSENSITIVE);
+            Matcher matcher = pattern.matcher(textContent);
+            int count = 0;
+            while (matcher.find()) {
+                count++;
+            }
+            if (count > 0) {
+                occurrences.put(keyword, count);
+            }
+        }
+        return occurrences;
+    }
+
+    /**
+     * 查詢時已建好的自動機，單次掃描
+     */
+    @Benchmark
+    public Map<Keyword, Integer> ahoCorasick() {
+        return keywordMatcher.countOccurrences(textContent);
+    }
+
+    /**
+     * 含建立自動機的成本 (每次查詢建一次)
+     */
+    @Benchmark
+    public Map<Keyword, Integer> ahoCorasickIncludingCompile() {
+        return KeywordMatcher.compile(keywords).countOccurrences(textContent);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.searchengine.benchmark;
+
+import com.example.searchengine.engine.KeywordCounterEngine;
+import com.example.searchengine.engine.KeywordMatcher;
+import com.example.searchengine.model.Keyword;
+import com.example.searchengine.model.Page;
+import com.example.searchengine.model.ProcessedPage;
+import com.example.searchengine.service.FetchExecutor;
+import com.example.searchengine.service.PageCache;
+import com.example.searchengine.service.PageFetchService;
+import com.example.searchengine.service.SearchMetrics;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 單頁計分的熱路徑 (KeywordCounterEngine)，各階段分開量測：
+ *
+ * - jsoupParseText：原本的 Jsoup.parse + body().text()
+ * - streamParse：目前的 ProcessedPage.fromHtml (HtmlStreamParser，不建 DOM)
+ * - analyzeOccurrences / calculateScore：關鍵字計數與計分
+ * - getPageStructure：depth 0 的完整計分 (已解析好的頁面)；FromHtml 版本含解析與建立 KeywordMatcher
+ *
+ * depth 0 不會抓子頁，全程不需要網路。加上 -prof gc 可看到配置速率 (gc.alloc.rate / gc.alloc.rate.norm)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageScoringBenchmark {
+
+    private static final String TITLE = "士林夜市 雞排";
+
+    @Param({"food_blog_shilin.html", "ptt_food_thread.html", "maps_listing_shilin.html"})
+    public String page;
+
+    @Param({"short", "long"})
+    public String query;
+
+    private String html;
+    private String url;
+    private List<Keyword> keywords;
+    private KeywordMatcher keywordMatcher;
+    private ProcessedPage processedPage;
+    private Map<Keyword, Integer> occurrences;
+
+    private FetchExecutor fetchExecutor;
+    private KeywordCounterEngine engine;
+
+    @Setup
+    public void setup() {
+        html = Corpus.load(page);
+        url = "https://example.com/" + page;
+        keywords = "short".equals(query) ? Corpus.shortQuery() : Corpus.longQuery();
+        keywordMatcher = KeywordMatcher.compile(keywords);
+        processedPage = ProcessedPage.fromHtml(html, url);
+
+        // depth 0 不會用到抓取服務與執行緒池，只是建構 KeywordCounterEngine 需要
+        fetchExecutor = new FetchExecutor(1, false);
+        PageFetchService pageFetchService = new PageFetchService(new PageCache(1L << 20, 1), SearchMetrics.NOOP,
+                1000, 1000, 1, 0, 0);
+        engine = new KeywordCounterEngine(pageFetchService, fetchExecutor, SearchMetrics.NOOP, 0, 1, 1, 1);
+        occurrences = engine.analyzeOccurrences(processedPage, keywordMatcher);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fetchExecutor.shutdown();
+    }
+
+    @Benchmark
+    public String jsoupParseText() {
+        return Jsoup.parse(html, url).body().text();
+    }
+
+    @Benchmark
+    public ProcessedPage streamParse() {
+        return ProcessedPage.fromHtml(html, url);
+    }
+
+    @Benchmark
+    public Map<Keyword, Integer> analyzeOccurrences() {
+        return engine.analyzeOccurrences(processedPage, keywordMatcher);
+    }
+
+    @Benchmark
+    public int calculateScore() {
+        return engine.calculateScore(occurrences, new HashMap<>());
+    }
+
+    @Benchmark
+    public Page getPageStructure() {
+        return engine.getPageStructure(processedPage, keywordMatcher, TITLE, url, 0);
+    }
+
+    @Benchmark
+    public Page getPageStructureFromHtml() {
+        return engine.getPageStructure(html, keywords, TITLE, url, 0);
+    }
+}
@@ -2,6 +2,12 @@ package com.example.searchengine;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @SpringBootApplication
 public class SearchEngineApplication {
@@ -9,4 +15,15 @@ public class SearchEngineApplication {
     public static void main(String[] args) {
         SpringApplication.run(SearchEngineApplication.class, args);
     }
+
+    /**
+     * FetchExecutor 也是 Executor bean，Spring Boot 的 applicationTaskExecutor 因而不會自動建立；
+     * 在這裡照 Boot 的預設 (spring.task.execution.*) 補回來，MVC async / @Async 才不會改用 SimpleAsyncTaskExecutor
+     */
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
 }
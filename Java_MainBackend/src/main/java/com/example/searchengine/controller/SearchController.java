@@ -1,126 +1,122 @@
 package com.example.searchengine.controller;
 
 import com.example.searchengine.engine.KeywordExtractionEngine;
-import com.example.searchengine.engine.KeywordCounterEngine;
+import com.example.searchengine.engine.KeywordMatcher;
+import com.example.searchengine.engine.PrefetchedSearch;
+import com.example.searchengine.engine.RootPageScorer;
 import com.example.searchengine.model.Keyword;
 import com.example.searchengine.model.KeywordExtractionResult;
-import com.example.searchengine.model.Page;
-import com.example.searchengine.service.GoogleQuery;
-
+import com.example.searchengine.model.RootPageResult;
+import com.example.searchengine.service.RelatedKeywordService;
+import com.example.searchengine.service.SearchMetrics;
+import com.example.searchengine.service.SearchResultCache;
+import com.example.searchengine.service.SearchResultCache.QueryKey;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 
 @Controller
 public class SearchController {
 
-    private final KeywordExtractionEngine keywordExtractionEngine;
-    private final KeywordCounterEngine keywordCounterEngine;
-
-    private final Map<String, String> htmlCache = new ConcurrentHashMap<>();
-
-    private boolean isDownloadLink(String url) {
-        String lower = url.toLowerCase();
-        return lower.endsWith(".pdf") 
-            || lower.endsWith(".zip")
-            || lower.contains("download.ashx")
-            || lower.contains("/download/");
-    }
+    private static final Logger logger = LoggerFactory.getLogger(SearchController.class);
 
-    public SearchController(KeywordExtractionEngine keywordExtractionEngine, KeywordCounterEngine keywordCounterEngine) {
+    private final KeywordExtractionEngine keywordExtractionEngine;
+    private final RootPageScorer rootPageScorer;
+    private final SearchResultCache searchResultCache;
+    private final RelatedKeywordService relatedKeywordService;
+    private final SearchMetrics searchMetrics;
+
+    // 串流 API：連線最長保持時間、每幾筆結果送一次重新排序的 snapshot
+    private static final long STREAM_TIMEOUT_MS = 60_000L;
+    private static final int SNAPSHOT_EVERY = 5;
+
+    // 計分在 deadline 當下才以 cutOff 結果完成，等待時多留一點時間讓它交出來
+    private static final long DEADLINE_GRACE_MS = 100L;
+
+    // 每個請求的預設延遲預算 (可用 budgetMs 參數覆寫，但不能超過 maxDeadlineMs)
+    private final long defaultDeadlineMs;
+    private final long maxDeadlineMs;
+    // 搜尋完成後最多再等 RELATED KEYWORDS 多久
+    private final long relatedAwaitMs;
+
+    public SearchController(KeywordExtractionEngine keywordExtractionEngine, RootPageScorer rootPageScorer,
+                            SearchResultCache searchResultCache,
+                            RelatedKeywordService relatedKeywordService, SearchMetrics searchMetrics,
+                            @Value("${search.deadline-ms:5000}") long defaultDeadlineMs,
+                            @Value("${search.max-deadline-ms:10000}") long maxDeadlineMs,
+                            @Value("${related.await-ms:1000}") long relatedAwaitMs) {
         this.keywordExtractionEngine = keywordExtractionEngine;
-        this.keywordCounterEngine = keywordCounterEngine;
+        this.rootPageScorer = rootPageScorer;
+        this.searchResultCache = searchResultCache;
+        this.relatedKeywordService = relatedKeywordService;
+        this.searchMetrics = searchMetrics;
+        this.defaultDeadlineMs = defaultDeadlineMs;
+        this.maxDeadlineMs = maxDeadlineMs;
+        this.relatedAwaitMs = relatedAwaitMs;
     }
 
     // API For Web
     @GetMapping("/search")
-    public String search(@RequestParam String query, Model model) {
+    public String search(@RequestParam String query,
+                         @RequestParam(required = false) Long budgetMs,
+                         Model model) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = deadlineFrom(startNanos, budgetMs);
+        String outcome = "error";
+        // 關鍵字一確定就先送出 Custom Search，不等 reranker 分類 (快取已有同一查詢時不送)
+        PrefetchedSearch prefetched = rootPageScorer.prefetch("");
         try {
-            // 第一步：關鍵字處理 (與原本相同)
-            KeywordExtractionResult extractionResult = keywordExtractionEngine.extractKeywords(query);
+            // 第一步：關鍵字處理 (翻譯 -> 斷詞 -> 分類，各階段有 timeout)；整個請求的 deadline 到了就回空結果
+            KeywordExtractionResult extractionResult = awaitUntil(
+                    keywordExtractionEngine.extractKeywordsAsync(query, prefetchOnMiss(prefetched)), deadlineNanos);
+            if (extractionResult == null) {
+                model.addAttribute("resultTexts", Collections.emptyList());
+                model.addAttribute("results", Collections.emptyList());
+                outcome = "timeout";
+                return "index";
+            }
             List<Keyword> keywordList = extractionResult.getKeywordList();
+            KeywordMatcher keywordMatcher = KeywordMatcher.compile(keywordList); // 每次查詢只建一次
             String combinedKeywords = extractionResult.getCombinedKeywords();
             // String combinedKeywordsgoo = combinedKeywords + "夜市 美食 店家";
 
             // 第二步：Google搜尋，取得前 50 筆結果
-            GoogleQuery googleQuery = new GoogleQuery(combinedKeywords);
-
-            // 取得 RELATED KEYWORDS (從 Google 網頁最底下的區域抓取)
-            List<String> resultTexts = googleQuery.fetchGoogleResultText(combinedKeywords);
-
-            // 打 Google API 取得所有 Results
-            Map<String, String> initialResults = googleQuery.query(); // title -> url
-
-            // ===★ 多執行緒平行抓取 ★===
-            ExecutorService executor = Executors.newFixedThreadPool(10);
-            List<Future<RootPageResult>> futures = new ArrayList<>();
-
-            // 逐筆提交抓網頁的任務
-            for (Map.Entry<String, String> entry : initialResults.entrySet()) {
-                futures.add(executor.submit(() -> {
-                    String result = entry.getKey();
-                    String title = "";
-                    String snippet = "";
-                    String pageUrl = entry.getValue();
-                    String delimiter = "DSPROJECT/x01";
-
-                    // 使用 split 方法分割字串
-                    String[] parts = result.split(delimiter);
-
-                    // 驗證分割後的結果
-                    if (parts.length == 2) {
-                        title = parts[0];
-                        snippet = parts[1];
-                    } else {
-                        System.out.println("格式不正確，無法分割字串");
-                        return new RootPageResult("", pageUrl, 0, "",new HashMap<>());
-                    }
-
-                    // (1) 過濾 PDF/下載 連結
-                    if (isDownloadLink(pageUrl)) {
-                        System.out.println("isDownloadLink");
-                        return new RootPageResult(title, pageUrl, 0, snippet,new HashMap<>());
-                    }
-
-                    // (2) 抓網頁
-                    String htmlContent = fetchHtmlContent(pageUrl); 
-                    if (htmlContent.isEmpty()) {
-                        // 403 或其它失敗 => 分數=0
-                        System.out.println("htmlContent");
-                        return new RootPageResult(title, pageUrl, 0, snippet, new HashMap<>());
-                    }
-
-                    // (3) depth=1
-                    Page rootPage = keywordCounterEngine.getPageStructure(htmlContent, keywordList, title, pageUrl, 1);
-                    int aggregatedScore = rootPage.getScore();
-                    Map<String, String> scoreDetails = rootPage.getScoreDetails(); // 從 Page 取得分數細節
-                    return new RootPageResult(title, pageUrl, aggregatedScore, snippet, scoreDetails);
-                }));
+            // RELATED KEYWORDS (從 Google 網頁最底下的區域抓取) 只用於顯示：與搜尋同時非同步抓
+            CompletableFuture<List<String>> related = relatedKeywordService.fetchAsync(combinedKeywords);
+
+            // 打 Google API 取得所有 Results (5 頁同時送出，每頁一回來就開始抓網頁)
+            // ===★ 多執行緒平行抓取 (共用的 FetchExecutor) + 依分數排序；超過 deadline 的頁面會被取消 ★===
+            // 同一組關鍵字的結果會被快取；同時進來的相同查詢只算一次 (budgetMs 較小的請求自己算，見 rankedResults)
+            // 等到 deadline 為止 (自己算的會在 deadline 交出 cutOff 結果；別的請求正在算、趕不上的就回空結果)
+            QueryKey cacheKey = QueryKey.of(keywordList, "");
+            List<RootPageResult> rootPageResults = awaitUntil(rankedResults(cacheKey, startNanos, deadlineNanos,
+                    searchDeadline -> prefetched.search(cacheKey.getGoogleQuery(), keywordMatcher, searchDeadline, null)),
+                    deadlineNanos);
+            if (rootPageResults == null) {
+                rootPageResults = Collections.emptyList();
+                outcome = "timeout";
             }
 
-            // 等所有任務完成
-            executor.shutdown();
-            List<RootPageResult> rootPageResults = new ArrayList<>();
-            for (Future<RootPageResult> f : futures) {
-                RootPageResult rpr = f.get(); // block 直到該任務跑完
-                rootPageResults.add(rpr);
-            }
-
-            // 第四步：依最終分數排序(高->低)
-            rootPageResults.sort((r1, r2) -> Integer.compare(r2.getAggregatedScore(), r1.getAggregatedScore()));
-
             // System.out.println("Sorted Results:");
             // for (RootPageResult rpr : rootPageResults) {
             //     System.out.println("Title: " + rpr.getTitle() + ", URL: " + rpr.getUrl() + ", Score: " + rpr.getAggregatedScore());
@@ -131,92 +127,67 @@ public class SearchController {
             //     System.out.println();
             // }
 
-            System.out.println("RELATED KEYWORDS: " + resultTexts);
+            // 搜尋完成後 RELATED KEYWORDS 最多再等一下，還沒抓到就不顯示 (下次同樣查詢會命中快取)
+            List<String> resultTexts = awaitRelated(related, deadlineNanos);
+            logger.debug("RELATED KEYWORDS: {}", resultTexts);
             model.addAttribute("resultTexts", resultTexts);
             model.addAttribute("results", rootPageResults);
             // model.addAttribute("query", combinedKeywords);
+            if (!"timeout".equals(outcome)) {
+                outcome = "ok";
+            }
 
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error fetching results", e);
             model.addAttribute("error", "Error fetching results");
+        } finally {
+            prefetched.release();
+            searchMetrics.recordRequest("search", outcome, startNanos);
         }
         return "index";
     }
 
     // API For IOS APP
     @GetMapping("/api/search")
-    public ResponseEntity<?> apiSearch(@RequestParam String query) {
+    public ResponseEntity<?> apiSearch(@RequestParam String query,
+                                       @RequestParam(required = false) Long budgetMs) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = deadlineFrom(startNanos, budgetMs);
+        String outcome = "error";
+        // 關鍵字一確定就先送出 Custom Search，不等 reranker 分類 (快取已有同一查詢時不送)
+        PrefetchedSearch prefetched = rootPageScorer.prefetch("夜市 美食");
         try {
-            // 第一步：關鍵字處理 (與原本相同)
-            KeywordExtractionResult extractionResult = keywordExtractionEngine.extractKeywords(query);
+            // 第一步：關鍵字處理 (翻譯 -> 斷詞 -> 分類，各階段有 timeout)；整個請求的 deadline 到了就回空結果
+            KeywordExtractionResult extractionResult = awaitUntil(
+                    keywordExtractionEngine.extractKeywordsAsync(query, prefetchOnMiss(prefetched)), deadlineNanos);
+            if (extractionResult == null) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("resultTexts", Collections.emptyList());
+                response.put("query", query);
+                response.put("results", Collections.emptyList());
+                outcome = "timeout";
+                return ResponseEntity.ok(response);
+            }
             List<Keyword> keywordList = extractionResult.getKeywordList();
+            KeywordMatcher keywordMatcher = KeywordMatcher.compile(keywordList); // 每次查詢只建一次
             String combinedKeywords = extractionResult.getCombinedKeywords();
             String combinedKeywordsgoo = combinedKeywords + "夜市 美食";
 
-            // 第二步：Google搜尋，取得前 50 筆結果
-            GoogleQuery googleQuery = new GoogleQuery(combinedKeywordsgoo);
-
-            List<String> resultTexts = googleQuery.fetchGoogleResultText(combinedKeywordsgoo);
-            Map<String, String> initialResults = googleQuery.query(); // title -> url
-
-            // ===★ 多執行緒平行抓取 ★===
-            ExecutorService executor = Executors.newFixedThreadPool(10);
-            List<Future<RootPageResult>> futures = new ArrayList<>();
-
-            // 逐筆提交抓網頁的任務
-            for (Map.Entry<String, String> entry : initialResults.entrySet()) {
-                futures.add(executor.submit(() -> {
-                    String result = entry.getKey();
-                    String title = "";
-                    String snippet = "";
-                    String pageUrl = entry.getValue();
-                    String delimiter = "DSPROJECT/x01";
-
-                    // 使用 split 方法分割字串
-                    String[] parts = result.split(delimiter);
-
-                    // 驗證分割後的結果
-                    if (parts.length == 2) {
-                        title = parts[0];
-                        snippet = parts[1];
-                    } else {
-                        System.out.println("格式不正確，無法分割字串");
-                        return new RootPageResult("", pageUrl, 0, "",new HashMap<>());
-                    }
-
-                    // (1) 過濾 PDF/下載 連結
-                    if (isDownloadLink(pageUrl)) {
-                        System.out.println("isDownloadLink");
-                        return new RootPageResult(title, pageUrl, 0, snippet,new HashMap<>());
-                    }
-
-                    // (2) 抓網頁
-                    String htmlContent = fetchHtmlContent(pageUrl); 
-                    if (htmlContent.isEmpty()) {
-                        // 403 或其它失敗 => 分數=0
-                        System.out.println("htmlContent");
-                        return new RootPageResult(title, pageUrl, 0, snippet, new HashMap<>());
-                    }
-
-                    // (3) depth=1
-                    Page rootPage = keywordCounterEngine.getPageStructure(htmlContent, keywordList, title, pageUrl, 1);
-                    int aggregatedScore = rootPage.getScore();
-                    Map<String, String> scoreDetails = rootPage.getScoreDetails(); // 從 Page 取得分數細節
-                    return new RootPageResult(title, pageUrl, aggregatedScore, snippet, scoreDetails);
-                }));
+            // 第二步：Google搜尋，取得前 50 筆結果；RELATED KEYWORDS 同時非同步抓
+            CompletableFuture<List<String>> related = relatedKeywordService.fetchAsync(combinedKeywordsgoo);
+
+            // ===★ 多執行緒平行抓取 (共用的 FetchExecutor) + 依分數排序；超過 deadline 的頁面會被取消 ★===
+            // 同一組關鍵字的結果會被快取；同時進來的相同查詢只算一次 (budgetMs 較小的請求自己算，見 rankedResults)
+            // 等到 deadline 為止 (自己算的會在 deadline 交出 cutOff 結果；別的請求正在算、趕不上的就回空結果)
+            QueryKey cacheKey = QueryKey.of(keywordList, "夜市 美食");
+            List<RootPageResult> rootPageResults = awaitUntil(rankedResults(cacheKey, startNanos, deadlineNanos,
+                    searchDeadline -> prefetched.search(cacheKey.getGoogleQuery(), keywordMatcher, searchDeadline, null)),
+                    deadlineNanos);
+            if (rootPageResults == null) {
+                rootPageResults = Collections.emptyList();
+                outcome = "timeout";
             }
 
-            // 等所有任務完成
-            executor.shutdown();
-            List<RootPageResult> rootPageResults = new ArrayList<>();
-            for (Future<RootPageResult> f : futures) {
-                RootPageResult rpr = f.get(); // block 直到該任務跑完
-                rootPageResults.add(rpr);
-            }
-
-            // 第四步：依最終分數排序(高->低)
-            rootPageResults.sort((r1, r2) -> Integer.compare(r2.getAggregatedScore(), r1.getAggregatedScore()));
-
             // System.out.println("Sorted Results:");
             // for (RootPageResult rpr : rootPageResults) {
             //     System.out.println("Title: " + rpr.getTitle() + ", URL: " + rpr.getUrl() + ", Score: " + rpr.getAggregatedScore());
@@ -227,117 +198,218 @@ public class SearchController {
             //     System.out.println();
             // }
 
-            // 返回 JSON 格式的結果
+            // 返回 JSON 格式的結果；RELATED KEYWORDS 最多再等一下，還沒好就回空清單 (需要的話改用串流版)
             Map<String, Object> response = new HashMap<>();
-            response.put("resultTexts", resultTexts);
+            response.put("resultTexts", awaitRelated(related, deadlineNanos));
             response.put("query", combinedKeywords);
             response.put("results", rootPageResults);
 
+            if (!"timeout".equals(outcome)) {
+                outcome = "ok";
+            }
             return ResponseEntity.ok(response);
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error fetching results", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error fetching results");
+        } finally {
+            prefetched.release();
+            searchMetrics.recordRequest("api", outcome, startNanos);
         }
     }
 
+    // API For IOS APP (串流版)：每頁計分完成就立即送出，不必等最慢的一頁
+    // 事件：query -> result (每頁一筆) / snapshot (目前為止的排名) / related -> complete
+    // related 可能在 complete 之後才送 (最多等 related.timeout-ms)，送完才結束連線
+    @GetMapping(value = "/api/search/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter apiSearchStream(@RequestParam String query,
+                                      @RequestParam(required = false) Long budgetMs) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = deadlineFrom(startNanos, budgetMs);
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        streamSearch(query, startNanos, deadlineNanos, emitter);
+        return emitter;
+    }
+
     /**
-     * 抓取網頁HTML內容，加入 User-Agent / Referer / 403 處理 + Cache
+     * 整個流程以 CompletableFuture 串起來，不阻塞任何執行緒 (尤其不佔用 FetchExecutor：
+     * 關鍵字處理、抓網頁與子頁都在那裡跑，等待它們的一方若也在裡面，請求多時會互相卡死)。
+     *
+     * client 斷線 / 連線逾時就退出等待：沒有其它請求在等同一個查詢時，計分 (含子頁抓取) 會一起取消。
+     *
+     * search.request{endpoint=stream} 記錄到送出 complete (或 error) 事件為止，不含之後才到的 related
      */
-    private String fetchHtmlContent(String pageUrl) throws IOException {
-        // 1. 檢查快取
-        if (htmlCache.containsKey(pageUrl)) {
-            return htmlCache.get(pageUrl); // 直接回傳已抓好的HTML
-        }
-
-        // 2. 協定檢查
-        if (!pageUrl.startsWith("http://") && !pageUrl.startsWith("https://")) {
-            // 無效連結，直接回 ""
-            return "";
-        }
-
-        HttpURLConnection conn = null;
-        try {
-            URL url = new URL(pageUrl);
-            conn = (HttpURLConnection) url.openConnection();
-
-            // 模擬真實瀏覽器 UA
-            conn.setRequestProperty("User-Agent",
-                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 " +
-                "(KHTML, like Gecko) Chrome/117.0.0.0 Safari/537.36");
-            conn.setRequestProperty("Referer", "https://www.google.com");
-
-            conn.setConnectTimeout(2000);
-            conn.setReadTimeout(2000);
-
-            int responseCode = conn.getResponseCode();
-            // 若 403，直接跳過
-            if (responseCode == 403) {
-                return "";
+    private void streamSearch(String query, long startNanos, long deadlineNanos, SseEmitter emitter) {
+        AtomicBoolean open = new AtomicBoolean(true);
+        AtomicReference<CompletableFuture<List<RootPageResult>>> pending = new AtomicReference<>();
+
+        // 關鍵字一確定就先送出 Custom Search，不等 reranker 分類 (快取已有同一查詢時不送)
+        PrefetchedSearch prefetched = rootPageScorer.prefetch("夜市 美食");
+
+        Runnable disconnected = () -> {
+            open.set(false);
+            CompletableFuture<List<RootPageResult>> ranked = pending.get();
+            if (ranked != null) {
+                ranked.cancel(true); // 只取消自己的等待 (見 SearchResultCache.get)
             }
-            if (responseCode != 200) {
-                return "";
+            prefetched.release();
+        };
+        emitter.onCompletion(disconnected);
+        emitter.onTimeout(disconnected);
+        emitter.onError(e -> disconnected.run());
+
+        // 第一步：關鍵字處理 (與 /api/search 相同)
+        keywordExtractionEngine.extractKeywordsAsync(query, prefetchOnMiss(prefetched)).thenCompose(extractionResult -> {
+            if (!open.get()) {
+                // 關鍵字處理完之前 client 就斷線了
+                searchMetrics.recordRequest("stream", "cancelled", startNanos);
+                return CompletableFuture.completedFuture(null);
+            }
+            List<Keyword> keywordList = extractionResult.getKeywordList();
+            KeywordMatcher keywordMatcher = KeywordMatcher.compile(keywordList); // 每次查詢只建一次
+            String combinedKeywords = extractionResult.getCombinedKeywords();
+            String combinedKeywordsgoo = combinedKeywords + "夜市 美食";
+            sendEvent(emitter, open, "query", combinedKeywords);
+
+            // 第二步：Google搜尋；RELATED KEYWORDS 只用於顯示，另外非同步抓，好了再送
+            CompletableFuture<List<String>> related = relatedKeywordService.fetchAsync(combinedKeywordsgoo)
+                    .whenComplete((texts, e) -> {
+                        if (texts != null && !texts.isEmpty()) {
+                            sendEvent(emitter, open, "related", texts);
+                        }
+                    });
+
+            // 第三步：與其它端點共用搜尋結果快取 (同時進來的相同查詢只算一次，見 rankedResults)；由這個請求計算時
+            // 每頁平行抓取，算完就送 result，每 SNAPSHOT_EVERY 筆再送一次重新排序後的 snapshot。
+            // 快取命中或別的請求正在算時只會收到最後的 complete
+            QueryKey cacheKey = QueryKey.of(keywordList, "夜市 美食");
+            List<RootPageResult> scored = new ArrayList<>();
+            CompletableFuture<List<RootPageResult>> ranked = rankedResults(cacheKey, startNanos, deadlineNanos,
+                    searchDeadline -> prefetched.search(cacheKey.getGoogleQuery(), keywordMatcher, searchDeadline, rpr -> {
+                        List<RootPageResult> snapshot = null;
+                        synchronized (scored) {
+                            scored.add(rpr);
+                            if (scored.size() % SNAPSHOT_EVERY == 0) {
+                                snapshot = RootPageScorer.rankByScore(scored);
+                            }
+                        }
+                        sendEvent(emitter, open, "result", rpr);
+                        if (snapshot != null) {
+                            sendEvent(emitter, open, "snapshot", snapshot);
+                        }
+                    }));
+            pending.set(ranked);
+            prefetched.release();
+            if (!open.get()) {
+                ranked.cancel(true); // 在 pending.set 之前斷線
             }
 
-            // 3. 讀取內容
-            StringBuilder sb = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), "UTF-8"))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    sb.append(line).append("\n");
+            // 計分完成 (或 deadline 到) -> 立即送最終排名，不等 RELATED KEYWORDS；
+            // 兩者都完成 (related 一定在自己的 timeout 內完成) 才結束連線
+            CompletableFuture<Void> rankedSent = ranked.handle((finalResults, e) -> {
+                if (finalResults != null) {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("query", combinedKeywords);
+                    response.put("results", finalResults);
+                    response.put("resultTexts", related.getNow(Collections.emptyList()));
+                    sendEvent(emitter, open, "complete", response);
+                    searchMetrics.recordRequest("stream", "ok", startNanos);
+                } else if (ranked.isCancelled()) {
+                    searchMetrics.recordRequest("stream", "cancelled", startNanos);
+                } else {
+                    logger.error("Error fetching results", e);
+                    sendEvent(emitter, open, "error", "Error fetching results");
+                    searchMetrics.recordRequest("stream", "error", startNanos);
                 }
+                return null;
+            });
+            return CompletableFuture.allOf(rankedSent, related);
+        }).whenComplete((v, e) -> {
+            if (e != null) {
+                // 關鍵字處理或送出搜尋時就失敗 (計分的錯誤已在上面送出)
+                logger.error("Error fetching results", e);
+                prefetched.release();
+                sendEvent(emitter, open, "error", "Error fetching results");
+                searchMetrics.recordRequest("stream", "error", startNanos);
             }
+            emitter.complete();
+        });
+    }
 
-            // 4. 放入 Cache
-            String htmlContent = sb.toString();
-            htmlCache.put(pageUrl, htmlContent);
-            return htmlContent;
-        } catch (IOException e) {
-            // 失敗直接回 ""
-            return "";
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
+    /**
+     * 排序好的搜尋結果。預算不小於 search.deadline-ms 時經過搜尋結果快取 (同時進來的相同查詢只算一次)，
+     * 共用的計算一律以預設 deadline 計分，不會因為某個請求的 budgetMs 讓其它請求也拿到 cutOff 的結果；
+     * 預算較小的請求自己計算，不與其它請求共用也不放進快取。
+     *
+     * @param search 以指定的 deadline 計分
+     */
+    private CompletableFuture<List<RootPageResult>> rankedResults(QueryKey cacheKey, long startNanos, long deadlineNanos,
+                                                                 LongFunction<CompletableFuture<List<RootPageResult>>> search) {
+        long sharedDeadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(defaultDeadlineMs);
+        if (deadlineNanos < sharedDeadlineNanos) {
+            return search.apply(deadlineNanos);
         }
-    } 
+        return searchResultCache.get(cacheKey, key -> search.apply(sharedDeadlineNanos));
+    }
 
     /**
-     * 用來儲存 root page 的結果(包含最終聚合分數)的內部類別
+     * 組合關鍵字一確定就先送出 Custom Search；搜尋結果快取裡已有 (或正在計算) 同一查詢字串時不送，
+     * 否則命中快取的請求也會白白花掉 5 次 API 呼叫
      */
-    public class RootPageResult {
-        private String title;
-        private String url;
-        private int aggregatedScore;
-        private String snippet; // 新增的字段
-        private Map<String, String> scoreDetails; // 用於記錄分數細節
-    
-        public RootPageResult(String title, String url, int aggregatedScore, String snippet, Map<String, String> scoreDetails) {
-            this.title = title;
-            this.url = url;
-            this.aggregatedScore = aggregatedScore;
-            this.snippet = snippet; // 初始化 snippet
-            this.scoreDetails = scoreDetails;
-        }
-    
-        // Getter 和 Setter
-        public String getTitle() {
-            return title;
-        }
-    
-        public String getUrl() {
-            return url;
+    private Consumer<String> prefetchOnMiss(PrefetchedSearch prefetched) {
+        return combinedKeywords -> {
+            if (!searchResultCache.containsGoogleQuery(prefetched.googleQueryFor(combinedKeywords))) {
+                prefetched.start(combinedKeywords);
+            }
+        };
+    }
+
+    /**
+     * 送出一個 SSE 事件；client 已斷線就不再送
+     */
+    private void sendEvent(SseEmitter emitter, AtomicBoolean open, String name, Object data) {
+        if (!open.get()) {
+            return;
         }
-    
-        public int getAggregatedScore() {
-            return aggregatedScore;
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            open.set(false);
         }
+    }
 
-        public String getSnippet() {
-            return snippet;
+    /**
+     * 這次請求的 deadline (System.nanoTime 基準)；budgetMs 未指定時使用 search.deadline-ms，
+     * 超過 search.max-deadline-ms 的 budgetMs 以上限計
+     */
+    private long deadlineFrom(long startNanos, Long budgetMs) {
+        long budget = (budgetMs != null && budgetMs > 0) ? Math.min(budgetMs, maxDeadlineMs) : defaultDeadlineMs;
+        return startNanos + TimeUnit.MILLISECONDS.toNanos(budget);
+    }
+
+    /**
+     * RELATED KEYWORDS 最多等 related.await-ms，且不超過這次請求的 deadline；來不及則回傳空清單
+     * (future 本身一定會在 related.timeout-ms 內完成，不會失敗)
+     */
+    private List<String> awaitRelated(CompletableFuture<List<String>> related, long deadlineNanos)
+            throws InterruptedException, ExecutionException {
+        long remainingNanos = Math.min(deadlineNanos - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(relatedAwaitMs));
+        try {
+            return related.get(Math.max(0L, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return Collections.emptyList();
         }
-    
-        public Map<String, String> getScoreDetails() {
-            return scoreDetails;
+    }
+
+    /**
+     * 最多等到 deadline (再加 DEADLINE_GRACE_MS)；來不及則回傳 null，future 不取消 (可能有其它請求共用)
+     */
+    private static <T> T awaitUntil(CompletableFuture<T> future, long deadlineNanos)
+            throws InterruptedException, ExecutionException {
+        long remainingNanos = deadlineNanos - System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEADLINE_GRACE_MS);
+        try {
+            return future.get(Math.max(0L, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return null;
         }
-    }    
+    }
 }
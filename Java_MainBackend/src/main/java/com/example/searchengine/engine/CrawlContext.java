@@ -0,0 +1,110 @@
+package com.example.searchengine.engine;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 單次搜尋的子頁抓取設定與狀態 (由 KeywordCounterEngine.newCrawlContext 建立)：
+ *
+ * - maxDepth / maxChildrenPerPage：往下抓幾層、每頁最多抓幾個子頁
+ * - maxPages：整次搜尋最多抓幾個子頁 (所有 root 頁共用)
+ * - 已拜訪的 URL (只存 64-bit hash)，同一次搜尋內不重複抓；不同搜尋彼此獨立，請求結束即回收
+ * - deadline 到或 cancel() 後不再發出新的抓取，進行中的抓取一併取消
+ */
+public final class CrawlContext {
+
+    private final int maxDepth;
+    private final int maxChildrenPerPage;
+    private final int maxPages;
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+
+    private final AtomicInteger pageCount = new AtomicInteger(0);
+    private final VisitedUrlSet visitedUrls = new VisitedUrlSet();
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    CrawlContext(int maxDepth, int maxChildrenPerPage, int maxPages, long deadlineNanos, boolean hasDeadline) {
+        this.maxDepth = maxDepth;
+        this.maxChildrenPerPage = maxChildrenPerPage;
+        this.maxPages = maxPages;
+        this.deadlineNanos = deadlineNanos;
+        this.hasDeadline = hasDeadline;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxChildrenPerPage() {
+        return maxChildrenPerPage;
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * 已抓 (或正在抓) 的子頁數
+     */
+    public int getPageCount() {
+        return pageCount.get();
+    }
+
+    /**
+     * 標記網址已訪問；已訪問過回傳 false (多個子頁平行抓取時以此保證只抓一次)
+     */
+    public boolean markVisited(String url) {
+        return visitedUrls.add(url);
+    }
+
+    public boolean isVisited(String url) {
+        return visitedUrls.contains(url);
+    }
+
+    /**
+     * 佔用一頁的額度；額度用完回傳 false
+     */
+    boolean tryAcquirePage() {
+        while (true) {
+            int current = pageCount.get();
+            if (current >= maxPages) {
+                return false;
+            }
+            if (pageCount.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 已取消或已超過 deadline
+     */
+    public boolean isExpired() {
+        return cancelled || (hasDeadline && System.nanoTime() - deadlineNanos >= 0);
+    }
+
+    /**
+     * 記下進行中的抓取，cancel() 時一併取消
+     */
+    <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        pending.add(future);
+        future.whenComplete((r, e) -> pending.remove(future));
+        if (cancelled) {
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    /**
+     * 停止抓取：之後不再發出新的請求，並取消所有進行中的抓取
+     */
+    public void cancel() {
+        cancelled = true;
+        for (CompletableFuture<?> future : pending) {
+            future.cancel(true);
+        }
+    }
+}
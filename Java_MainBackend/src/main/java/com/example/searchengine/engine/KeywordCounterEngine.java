@@ -2,169 +2,205 @@ package com.example.searchengine.engine;
 
 import com.example.searchengine.model.Keyword;
 import com.example.searchengine.model.Page;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import com.example.searchengine.model.ProcessedPage;
+import com.example.searchengine.service.FetchExecutor;
+import com.example.searchengine.service.PageFetchService;
+import com.example.searchengine.service.SearchMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Component
 public class KeywordCounterEngine {
 
     private static final Logger logger = LoggerFactory.getLogger(KeywordCounterEngine.class);
 
-    // 已拜訪過的 URL (防止重複抓)
-    private final Set<String> visitedUrls = ConcurrentHashMap.newKeySet();
+    // 統一的網頁抓取服務
+    private final PageFetchService pageFetchService;
     
-    // HTML Cache (避免重複下載同一頁)
-    private final Map<String, String> htmlCache = new ConcurrentHashMap<>();
-    
-    // 執行緒池 (如要並行或做子頁抓取任務)
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
-
-    // 用於限制全域抓多少頁
-    private final AtomicInteger totalPageCount = new AtomicInteger(0);
-    // private static final int MAX_TOTAL_PAGES = 50;
-
-    public KeywordCounterEngine() {
-        // 預設建構子
+    // 執行緒池 (子頁計分；與 SearchController 共用，由 Spring 管理生命週期)
+    private final FetchExecutor fetchExecutor;
+
+    // 每頁計分時間 (search.page.score)
+    private final SearchMetrics searchMetrics;
+
+    // 子頁抓取：往下幾層、每頁幾個子頁、每次搜尋最多幾個子頁
+    private final int maxDepth;
+    private final int maxChildrenPerPage;
+    private final int maxPages;
+    // 每頁保留幾個候選連結 (依 LinkFrontier 分數)
+    private final int frontierCapacity;
+
+    public KeywordCounterEngine(
+            PageFetchService pageFetchService,
+            FetchExecutor fetchExecutor,
+            SearchMetrics searchMetrics,
+            @Value("${crawl.max-depth:1}") int maxDepth,
+            @Value("${crawl.max-children-per-page:1}") int maxChildrenPerPage,
+            @Value("${crawl.max-pages:50}") int maxPages,
+            @Value("${crawl.frontier-size:8}") int frontierCapacity
+    ) {
+        this.pageFetchService = pageFetchService;
+        this.fetchExecutor = fetchExecutor;
+        this.searchMetrics = searchMetrics;
+        this.maxDepth = maxDepth;
+        this.maxChildrenPerPage = maxChildrenPerPage;
+        this.maxPages = maxPages;
+        this.frontierCapacity = frontierCapacity;
     }
 
     /**
-     * 重新搜尋前，可呼叫此方法清空相關計數與快取。
-     * 避免因為 totalPageCount 與 visitedUrls 累積，導致之後都回傳 0 分。
+     * 分析並取得某頁面的結構、關鍵字分數、以及(若 depth > 0)的子頁遞迴。
      */
-    public void resetEngineState() {
-        visitedUrls.clear();
-        htmlCache.clear();
-        totalPageCount.set(0);
-        logger.info("KeywordCounterEngine state has been reset.");
+    public Page getPageStructure(String htmlContent, List<Keyword> keywords, String title, String url, int depth) {
+        return getPageStructure(ProcessedPage.fromHtml(htmlContent, url), KeywordMatcher.compile(keywords), title, url, depth);
     }
 
     /**
-     * 分析並取得某頁面的結構、關鍵字分數、以及(若 depth > 0)的子頁遞迴。
+     * 同上，但直接使用已解析好的頁面與同一查詢已建立好的 KeywordMatcher，避免重複 parse / 重建。
      */
-    public Page getPageStructure(String htmlContent, List<Keyword> keywords, String title, String url, int depth) {
-        logger.info("Processing page: {} , depth: {}, total pages processed so far: {}", url, depth, totalPageCount.get());
+    public Page getPageStructure(ProcessedPage processedPage, KeywordMatcher keywordMatcher, String title, String url, int depth) {
+        return getPageStructure(processedPage, keywordMatcher, NightMarketBoost.NONE, title, url, depth);
+    }
 
-        // 若深度 < 0 或已達最大頁數，直接給 0 分
+    /**
+     * 同上，並依夜市資料加分 (頁面提到今天有營業 / 位於查詢行政區的夜市)
+     */
+    public Page getPageStructure(ProcessedPage processedPage, KeywordMatcher keywordMatcher, NightMarketBoost nightMarketBoost,
+                                 String title, String url, int depth) {
+        // 若深度 < 0，直接給 0 分
         if (depth < 0) {
-            logger.info("Stop processing page: {} (depth: {} or max pages reached).", url, depth);
+            logger.info("Stop processing page: {} (depth: {}).", url, depth);
             return new Page(title, url, 0, new HashMap<>());
         }
+        CrawlContext crawlContext = new CrawlContext(depth, maxChildrenPerPage, maxPages, 0L, false);
+        return getPageStructure(processedPage, keywordMatcher, nightMarketBoost, title, url, crawlContext);
+    }
+
+    /**
+     * 同上，但使用呼叫端 (同一次搜尋) 的 CrawlContext：已拜訪 URL 與頁數額度只在這次搜尋內共用。
+     *
+     * 會等子頁全部抓完或 crawlContext 過期；不要在 FetchExecutor 的任務裡呼叫，
+     * 請改用 scorePage + crawlChildren。
+     */
+    public Page getPageStructure(ProcessedPage processedPage, KeywordMatcher keywordMatcher, NightMarketBoost nightMarketBoost,
+                                 String title, String url, CrawlContext crawlContext) {
+        crawlContext.markVisited(url);
+        Page currentPage = scorePage(processedPage, keywordMatcher, nightMarketBoost, title, url);
+        crawlChildren(currentPage, processedPage, keywordMatcher, nightMarketBoost, crawlContext).join();
+        return currentPage;
+    }
+
+    /**
+     * 依設定 (crawl.*) 建立單次搜尋的子頁抓取狀態；搜尋結束後即可回收
+     */
+    public CrawlContext newCrawlContext(long deadlineNanos) {
+        return new CrawlContext(maxDepth, maxChildrenPerPage, maxPages, deadlineNanos, true);
+    }
 
-        // 記數 +1
-        totalPageCount.incrementAndGet();
+    /**
+     * 只計算這一頁本身的分數 (不抓子頁)
+     */
+    public Page scorePage(ProcessedPage processedPage, KeywordMatcher keywordMatcher, NightMarketBoost nightMarketBoost,
+                          String title, String url) {
+        long startNanos = System.nanoTime();
+        logger.info("Processing page: {}", url);
 
-        if (htmlContent == null || htmlContent.isEmpty()) {
+        if (processedPage == null || processedPage.isEmpty()) {
             logger.warn("No content for URL: {}, score=0", url);
             return new Page(title, url, 0, new HashMap<>());
         }
 
         // 1. 分析關鍵字出現次數
-        Map<Keyword, Integer> keywordOccurrences = analyzeOccurrences(htmlContent, keywords);
+        Map<Keyword, Integer> keywordOccurrences = analyzeOccurrences(processedPage, keywordMatcher);
         logger.debug("Keyword occurrences in {}: {}", url, keywordOccurrences);
 
         // 2. 計算分數
         Map<String, String> scoreDetails = new HashMap<>();
         int score = calculateScore(keywordOccurrences, scoreDetails);
+        score += nightMarketBoost.apply(processedPage.getText(), scoreDetails);
         logger.info("Score for page {}: {}", url, score);
+        searchMetrics.recordPageScore(startNanos);
 
-        // 建立當前頁物件
-        Page currentPage = new Page(title, url, score, scoreDetails);
-
-        // 3. 若 depth > 0 再去抓子頁 (為確保速度，限定抓取一個子連結，以維持使用者體驗)
-        if (depth > 0) {
-            Document doc = Jsoup.parse(htmlContent);
-            doc.setBaseUri(url); // 確保有 Base URI 設定
-
-            Elements links = doc.select("a[href]");
-            int childrenCount = 0;
-
-            for (Element link : links) {
-                if (childrenCount >= 1) {
-                    break; // 只抓一個子連結
-                }
-
-                String childUrl = link.absUrl("href"); // 取得絕對 URL
-
-                // 打印調試訊息，確認抓到的 URL
-                System.out.println("Raw href: " + link.attr("href"));
-                System.out.println("Calculated absolute URL: " + childUrl);
+        return new Page(title, url, score, scoreDetails);
+    }
 
-                if (childUrl.isEmpty()) {
-                    System.out.println("Empty childUrl for link: " + link.text());
-                    continue; // 跳過空的 URL
-                }
+    /**
+     * 平行抓取 parent 的子頁 (最多 crawlContext.getMaxDepth() 層、每頁 getMaxChildrenPerPage() 個)。
+     * 子頁依 LinkFrontier 的連結分數挑選 (錨點文字 / URL 命中關鍵字、網域、路徑深度)。
+     *
+     * 子頁由 PageFetchService 非同步下載，下載完成後在共用的 FetchExecutor 上計分並加到 parent，
+     * 所以 parent.getAggregatedScore() 隨時都是「目前已完成的子頁」的加總，呼叫端可以不等全部完成。
+     * 回傳的 future 在所有子頁 (含更深層) 完成後完成；deadline 到或取消後不再發出新的抓取。
+     */
+    public CompletableFuture<Void> crawlChildren(Page parent, ProcessedPage content, KeywordMatcher keywordMatcher,
+                                                 NightMarketBoost nightMarketBoost, CrawlContext crawlContext) {
+        return crawlChildren(parent, content, keywordMatcher, nightMarketBoost, crawlContext.getMaxDepth(), crawlContext);
+    }
 
-                if (!childUrl.startsWith("http://") && !childUrl.startsWith("https://")) {
-                    System.out.println("Invalid URL (not HTTP/HTTPS): " + childUrl);
-                    continue; // 跳過非 HTTP/HTTPS 的連結
-                }
+    private CompletableFuture<Void> crawlChildren(Page parent, ProcessedPage content, KeywordMatcher keywordMatcher,
+                                                  NightMarketBoost nightMarketBoost, int depth, CrawlContext crawlContext) {
+        if (depth <= 0 || content == null || content.isEmpty() || crawlContext.isExpired()) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-                if (!isVisited(childUrl)) {
-                    markVisited(childUrl);
-                    childrenCount++;
+        // 外連已在解析時轉成絕對網址並濾掉非 HTTP/HTTPS，不需再 parse 一次；
+        // 依連結分數挑候選 (多留一些給已拜訪過的)，由高分往下抓
+        int frontierSize = Math.max(crawlContext.getMaxChildrenPerPage(), frontierCapacity);
+        List<CompletableFuture<Void>> children = new ArrayList<>();
+        for (LinkFrontier.ScoredLink link : LinkFrontier.select(content, parent.getUrl(), keywordMatcher, frontierSize)) {
+            if (children.size() >= crawlContext.getMaxChildrenPerPage()) {
+                break;
+            }
 
-                    System.out.printf("Fetching child page: %s%n", childUrl);
-                    logger.debug("Fetching child page: {}", childUrl);
+            String childUrl = link.getUrl();
+            if (!crawlContext.markVisited(childUrl)) {
+                logger.debug("Skipping child page: {} (already visited)", childUrl);
+                continue;
+            }
+            if (!crawlContext.tryAcquirePage()) {
+                logger.debug("Page budget ({}) reached, stop crawling children of {}", crawlContext.getMaxPages(), parent.getUrl());
+                break;
+            }
 
-                    try {
-                        String childHtmlContent = fetchHtmlContent(childUrl);
-                        Page childPage = getPageStructure(childHtmlContent, keywords, link.text(), childUrl, depth - 1);
-                        if (childPage != null) {
-                            currentPage.addChild(childPage);
+            logger.debug("Fetching child page: {} (link score {})", childUrl, link.getScore());
+            CompletableFuture<ProcessedPage> fetch = crawlContext.track(pageFetchService.fetchAsync(childUrl));
+            children.add(fetch
+                    .thenComposeAsync(childContent -> {
+                        if (crawlContext.isExpired()) {
+                            return CompletableFuture.<Void>completedFuture(null);
                         }
-                    } catch (Exception e) {
-                        logger.error("Error processing child page: {}", childUrl, e);
-                    }
-                } else {
-                    logger.debug("Skipping child page: {} (already visited)", childUrl);
-                }
-            }
+                        Page childPage = scorePage(childContent, keywordMatcher, nightMarketBoost, link.getAnchorText(), childUrl);
+                        parent.addChild(childPage);
+                        return crawlChildren(childPage, childContent, keywordMatcher, nightMarketBoost, depth - 1, crawlContext);
+                    }, fetchExecutor)
+                    .exceptionally(e -> {
+                        // 取消 (deadline) 或執行緒池已關閉：略過這個子頁
+                        if (!(e instanceof CancellationException || e.getCause() instanceof CancellationException)) {
+                            logger.error("Error processing child page: {}", childUrl, e);
+                        }
+                        return null;
+                    }));
         }
-
-        return currentPage;
+        return CompletableFuture.allOf(children.toArray(CompletableFuture<?>[]::new));
     }
 
     /**
-     * 分析關鍵字在 htmlContent 裡的出現次數
+     * 分析關鍵字在頁面 body 文字裡的出現次數 (單次掃描)；public 供 benchmarks 模組直接量測
      */
-    private Map<Keyword, Integer> analyzeOccurrences(String htmlContent, List<Keyword> keywords) {
-        Map<Keyword, Integer> occurrences = new HashMap<>();
-        Document doc = Jsoup.parse(htmlContent);
-
-        // 取出 body text
-        String textContent = (doc.body() != null) ? doc.body().text() : "";
-
-        // 針對每個 keyword 做計算
-        for (Keyword keyword : keywords) {
-            String word = keyword.getWord();
-            int count = countOccurrences(textContent, word);
-            if (count > 0) {
-                occurrences.put(keyword, count);
-            }
-        }
-        return occurrences;
+    public Map<Keyword, Integer> analyzeOccurrences(ProcessedPage processedPage, KeywordMatcher keywordMatcher) {
+        // 所有 keyword 一次算完
+        return keywordMatcher.countOccurrences(processedPage.getText());
     }
 
     /**
-     * 根據關鍵字出現次數 * 權重 來計算總分，並記錄計算細節
+     * 根據關鍵字出現次數 * 權重 來計算總分，並記錄計算細節；public 供 benchmarks 模組直接量測
      */
-    private int calculateScore(Map<Keyword, Integer> keywordOccurrences, Map<String, String> scoreDetails) {
+    public int calculateScore(Map<Keyword, Integer> keywordOccurrences, Map<String, String> scoreDetails) {
         int totalScore = 0;
         for (Map.Entry<Keyword, Integer> entry : keywordOccurrences.entrySet()) {
             Keyword kw = entry.getKey();
@@ -179,99 +215,4 @@ public class KeywordCounterEngine {
         return totalScore;
     }
 
-    /**
-     * 計算字串中關鍵字出現次數 (不使用單詞邊界)
-     */
-    private int countOccurrences(String text, String word) {
-        Pattern pattern = Pattern.compile(Pattern.quote(word), Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(text);
-        int count = 0;
-        while (matcher.find()) {
-            count++;
-        }
-        return count;
-    }
-
-    /**
-     * 抓取網頁 (有簡單的 Cache 與 403/非200 處理)
-     */
-    private String fetchHtmlContent(String pageUrl) throws IOException {
-        // 1. 檢查快取
-        if (htmlCache.containsKey(pageUrl)) {
-            return htmlCache.get(pageUrl);
-        }
-
-        // 2. 檢查協定
-        if (!pageUrl.startsWith("http://") && !pageUrl.startsWith("https://")) {
-            return "";
-        }
-
-        HttpURLConnection conn = null;
-        try {
-            URL url = new URL(pageUrl);
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestProperty("User-Agent",
-                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 " +
-                "(KHTML, like Gecko) Chrome/117.0.0.0 Safari/537.36");
-            conn.setRequestProperty("Referer", "https://www.google.com");
-            conn.setConnectTimeout(2000);
-            conn.setReadTimeout(2000);
-
-            int responseCode = conn.getResponseCode();
-            if (responseCode == 403 || responseCode != 200) {
-                return "";
-            }
-
-            // 3. 讀取內容
-            StringBuilder sb = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), "UTF-8"))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    sb.append(line).append("\n");
-                }
-            }
-
-            // 4. 放進 Cache
-            String htmlContent = sb.toString();
-            htmlCache.put(pageUrl, htmlContent);
-            return htmlContent;
-        } catch (IOException e) {
-            logger.error("Error fetching page: {}", pageUrl, e);
-            return "";
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
-        }
-    }
-
-    /**
-     * 檢查是否已訪問過該網址
-     */
-    private boolean isVisited(String url) {
-        return visitedUrls.contains(url);
-    }
-
-    /**
-     * 標記網址已訪問
-     */
-    private void markVisited(String url) {
-        visitedUrls.add(url);
-    }
-
-    /**
-     * 若要優雅關閉執行緒池，可在 Application 關閉前呼叫
-     */
-    public void shutdown() {
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
-            }
-        } catch (InterruptedException ex) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-    }
 }
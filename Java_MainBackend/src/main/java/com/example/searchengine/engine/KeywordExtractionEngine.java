@@ -4,74 +4,176 @@ import com.example.searchengine.model.Keyword;
 import com.example.searchengine.model.KeywordExtractionResult;
 import com.example.searchengine.model.ClassificationModel;
 import com.example.searchengine.model.CKIPTransformer;
+import com.example.searchengine.model.ChineseSegmenter;
+import com.example.searchengine.service.FetchExecutor;
 import com.example.searchengine.service.GoogleTranslateService;
+import com.example.searchengine.service.SearchMetrics;
 import com.example.searchengine.model.ClassificationModel.ClassificationResult;
 
 import java.util.stream.Stream;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * 使用者輸入 -> 關鍵字 (含權重)，分成三個非同步階段，每個階段都有 timeout 與降級結果：
+ *
+ * 1. 翻譯 (非中文才做)：逾時 / 失敗 -> 直接用原文
+ * 2. 斷詞 (字典斷詞信心不足才問 CKIP)：逾時 / 失敗 -> 字典斷詞的結果 (或用空格切)
+ * 3. 分類 (本地索引判定不了的 token 一次送給 reranker)：逾時 / 失敗 -> 當作 Food Name
+ *
+ * 外部呼叫都在共用的 FetchExecutor 上執行，最壞延遲約為三個 timeout 之和。
+ */
 @Component
 public class KeywordExtractionEngine {
 
+    private static final Logger logger = LoggerFactory.getLogger(KeywordExtractionEngine.class);
+
     private final ClassificationModel classificationModel;
     private final CKIPTransformer ckipTransformer;
+    private final ChineseSegmenter chineseSegmenter;
     private final GoogleTranslateService googleTranslateService;
+    private final FetchExecutor fetchExecutor;
+    private final SearchMetrics searchMetrics;
+
+    // 各階段的 timeout (毫秒)
+    private final long translateTimeoutMs;
+    private final long ckipTimeoutMs;
+    private final long classifyTimeoutMs;
 
     public KeywordExtractionEngine(
             ClassificationModel classificationModel,
             CKIPTransformer ckipTransformer,
-            GoogleTranslateService googleTranslateService
+            ChineseSegmenter chineseSegmenter,
+            GoogleTranslateService googleTranslateService,
+            FetchExecutor fetchExecutor,
+            SearchMetrics searchMetrics,
+            @Value("${extraction.translate-timeout-ms:1500}") long translateTimeoutMs,
+            @Value("${extraction.ckip-timeout-ms:1500}") long ckipTimeoutMs,
+            @Value("${extraction.classify-timeout-ms:1500}") long classifyTimeoutMs
     ) {
         this.classificationModel = classificationModel;
         this.ckipTransformer = ckipTransformer;
+        this.chineseSegmenter = chineseSegmenter;
         this.googleTranslateService = googleTranslateService;
+        this.fetchExecutor = fetchExecutor;
+        this.searchMetrics = searchMetrics;
+        this.translateTimeoutMs = translateTimeoutMs;
+        this.ckipTimeoutMs = ckipTimeoutMs;
+        this.classifyTimeoutMs = classifyTimeoutMs;
     }
 
+    /**
+     * 同步版本 (等 extractKeywordsAsync 完成)
+     */
     public KeywordExtractionResult extractKeywords(String userInput) throws IOException {
-        // 1. 檢查輸入是否非中文並進行翻譯 (設定一個 final boolean isTranslated)
-        final boolean isTranslated;
         try {
-            if (!isChinese(userInput)) {
-                userInput = googleTranslateService.translateToChinese(userInput);
-                isTranslated = true;
+            return extractKeywordsAsync(userInput, null).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * @param onCombinedKeywords 組合關鍵字字串在分類完成「之前」就能確定時呼叫 (可為 null)，
+     *                           呼叫端可以先送出 Custom Search；分類能立即完成或輸入經過翻譯
+     *                           (分類可能換掉關鍵字) 時不會呼叫
+     */
+    public CompletableFuture<KeywordExtractionResult> extractKeywordsAsync(String userInput,
+                                                                          Consumer<String> onCombinedKeywords) {
+        // 1. 檢查輸入是否非中文並進行翻譯
+        return translate(userInput).thenCompose(input -> {
+            final boolean isTranslated = input.translated;
+
+            // 2. 檢查輸入是否包含空格 -> 決定要用自己簡單切詞 or 字典斷詞 (信心不足才用 CKIP)
+            CompletableFuture<List<String>> tokenized;
+            if (input.text.contains(" ") || input.text.length() <= 8) {
+                tokenized = CompletableFuture.completedFuture(tokenize(input.text));
             } else {
-                isTranslated = false;
+                tokenized = segment(input.text);
             }
-        } catch (IOException e) {
-            e.printStackTrace(); 
-            // 你也可以改用 logger 記錄，如 Logger.error("翻譯失敗", e);
-            return new KeywordExtractionResult("", Collections.emptyList()); // 返回空結果
+
+            return tokenized.thenCompose(segmented -> {
+                List<String> additionalKeywords = Arrays.asList("夜市", "美食", "店家");
+                List<String> tokens = Stream.concat(segmented.stream(), additionalKeywords.stream())
+                        .collect(Collectors.toList());
+
+                // 3. 將分詞結果進行分類與權重分配 (本地判定不了的 token 一次送給 reranker)
+                CompletableFuture<List<ClassificationResult>> classified =
+                        classificationModel.predictCategoriesAsync(tokens, fetchExecutor, classifyTimeoutMs);
+
+                // 沒翻譯過時關鍵字就是 token 本身，不必等 reranker 就能先送出搜尋
+                if (onCombinedKeywords != null && !isTranslated && !classified.isDone()) {
+                    onCombinedKeywords.accept(String.join(" ", tokens));
+                }
+
+                return classified.thenApply(classifications -> {
+                    List<Keyword> keywords = new ArrayList<>();
+                    for (int i = 0; i < tokens.size(); i++) {
+                        Keyword keyword = categorizeAndAssignWeight(tokens.get(i), classifications.get(i), isTranslated);
+                        if (keyword != null) {
+                            keywords.add(keyword);
+                        }
+                    }
+
+                    // 4. 組合關鍵字字串 (注意：這裡關鍵字已經有可能被替換為 matchedValue)
+                    String combinedKeywords = keywords.stream()
+                            .map(Keyword::getWord)
+                            .collect(Collectors.joining(" "));
+
+                    return new KeywordExtractionResult(combinedKeywords, keywords);
+                });
+            });
+        });
+    }
+
+    /**
+     * 翻譯階段的結果
+     */
+    private static final class Input {
+        final String text;
+        final boolean translated;
+
+        Input(String text, boolean translated) {
+            this.text = text;
+            this.translated = translated;
         }
+    }
 
-        // 2. 檢查輸入是否包含空格 -> 決定要用自己簡單切詞 or CKIP
-        List<String> tokens;
-        if (userInput.contains(" ") || userInput.length() <= 8) {
-            tokens = tokenize(userInput);
-        } else {
-            tokens = ckipTransformer.tokenize(userInput);
+    /**
+     * 非中文才翻譯；逾時或失敗時直接用原文 (當作沒翻譯)
+     */
+    private CompletableFuture<Input> translate(String userInput) {
+        if (isChinese(userInput)) {
+            return CompletableFuture.completedFuture(new Input(userInput, false));
         }
-        
-        List<String> additionalKeywords = Arrays.asList("夜市", "美食", "店家");
-        tokens = Stream.concat(tokens.stream(), additionalKeywords.stream())
-                    .collect(Collectors.toList());
-
-        // 3. 將分詞結果進行分類與權重分配
-        List<Keyword> keywords = tokens.stream()
-                .map(token -> categorizeAndAssignWeight(token, isTranslated))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-
-        // 4. 組合關鍵字字串 (注意：這裡關鍵字已經有可能被替換為 matchedValue)
-        String combinedKeywords = keywords.stream()
-                .map(Keyword::getWord)
-                .collect(Collectors.joining(" "));
-
-        return new KeywordExtractionResult(combinedKeywords, keywords);
+        Input untranslated = new Input(userInput, false);
+        long startNanos = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return new Input(googleTranslateService.translateToChinese(userInput), true);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, fetchExecutor)
+                .orTimeout(translateTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((input, e) -> searchMetrics.recordExtraction("translate", e, startNanos))
+                .exceptionally(e -> {
+                    logger.warn("Translation failed, using original input: {}", e.toString());
+                    return untranslated;
+                });
     }
 
     /**
@@ -82,6 +184,34 @@ public class KeywordExtractionEngine {
         return input.chars().anyMatch(ch -> Character.UnicodeScript.of(ch) == Character.UnicodeScript.HAN);
     }
 
+    /**
+     * 先用 JVM 內的字典斷詞；詞庫涵蓋不足時才呼叫 CKIP，並把 CKIP 的結果加進詞庫。
+     * CKIP 逾時或失敗時退回字典斷詞的結果 (沒有結果再用空格切)
+     */
+    private CompletableFuture<List<String>> segment(String input) {
+        ChineseSegmenter.Segmentation segmentation = chineseSegmenter.segment(input);
+        if (segmentation.isConfident()) {
+            return CompletableFuture.completedFuture(segmentation.getTokens());
+        }
+        List<String> fallback = segmentation.getTokens().isEmpty() ? tokenize(input) : segmentation.getTokens();
+        long startNanos = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        List<String> tokens = ckipTransformer.tokenize(input);
+                        chineseSegmenter.learn(tokens);
+                        return tokens;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, fetchExecutor)
+                .orTimeout(ckipTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((tokens, e) -> searchMetrics.recordExtraction("ckip", e, startNanos))
+                .exceptionally(e -> {
+                    logger.warn("CKIP tokenization failed, using dictionary segmentation: {}", e.toString());
+                    return fallback;
+                });
+    }
+
     /**
      * 最簡單的用空格分詞
      */
@@ -97,9 +227,8 @@ public class KeywordExtractionEngine {
      * 如果 userInput 是翻譯來的 (isTranslated = true)，且分類屬於縣市/夜市，我們就用 matchedValue 覆蓋 token
      * 以免 Google 翻譯的詞不精準。
      */
-    private Keyword categorizeAndAssignWeight(String token, boolean isTranslated) {
-        // 取得分類結果 (包含 category & matchedValue)
-        ClassificationResult cr = classificationModel.predictCategory(token);
+    private Keyword categorizeAndAssignWeight(String token, ClassificationResult cr, boolean isTranslated) {
+        // cr 為分類結果 (包含 category & matchedValue)
         if (cr == null) {
             // 若 model 回傳 null，直接忽略該 token
             return null;
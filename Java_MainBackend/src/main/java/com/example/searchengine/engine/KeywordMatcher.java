@@ -0,0 +1,199 @@
+package com.example.searchengine.engine;
+
+import com.example.searchengine.model.Keyword;
+
+import java.util.*;
+
+/**
+ * 多關鍵字比對器 (Aho-Corasick 自動機)。
+ *
+ * 每次查詢只需由 List<Keyword> 建立一次，之後每個頁面只要掃描一次文字，
+ * 就能同時算出所有關鍵字的出現次數。
+ *
+ * 計數規則與原本的 Pattern.quote + CASE_INSENSITIVE 一致：
+ * - 只對 ASCII 英文字母做大小寫不敏感 (中文字完全比對)
+ * - 同一個關鍵字的出現次數以「不重疊」方式計算 (與 Matcher.find() 相同)
+ * - 不同關鍵字之間彼此獨立計算，可互相重疊
+ */
+public final class KeywordMatcher {
+
+    private static final int ROOT = 0;
+
+    private final List<Keyword> keywords;
+    private final int[] patternLengths;
+    private final boolean hasEmptyPattern;
+
+    // 每個節點的轉移 (labels 已排序，搭配 binary search)
+    private final char[][] labels;
+    private final int[][] targets;
+    // 失敗連結
+    private final int[] fail;
+    // 每個節點結束的關鍵字 (包含沿失敗連結可到達的輸出)
+    private final int[][] outputs;
+
+    private KeywordMatcher(List<Keyword> keywords) {
+        this.keywords = Collections.unmodifiableList(new ArrayList<>(keywords));
+
+        int n = this.keywords.size();
+        patternLengths = new int[n];
+
+        // 1. 建立 trie (建構期使用 Map，完成後再壓成陣列)
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        children.add(new HashMap<>());
+        nodeOutputs.add(new ArrayList<>());
+
+        boolean empty = false;
+        for (int i = 0; i < n; i++) {
+            String word = this.keywords.get(i).getWord();
+            patternLengths[i] = word.length();
+            if (word.isEmpty()) {
+                empty = true;
+                continue;
+            }
+            int state = ROOT;
+            for (int j = 0; j < word.length(); j++) {
+                char c = fold(word.charAt(j));
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new HashMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                    children.get(state).put(c, next);
+                }
+                state = next;
+            }
+            nodeOutputs.get(state).add(i);
+        }
+        hasEmptyPattern = empty;
+
+        int size = children.size();
+        labels = new char[size][];
+        targets = new int[size][];
+        for (int s = 0; s < size; s++) {
+            Map<Character, Integer> edges = children.get(s);
+            char[] ls = new char[edges.size()];
+            int k = 0;
+            for (Character c : edges.keySet()) {
+                ls[k++] = c;
+            }
+            Arrays.sort(ls);
+            int[] ts = new int[ls.length];
+            for (int j = 0; j < ls.length; j++) {
+                ts[j] = edges.get(ls[j]);
+            }
+            labels[s] = ls;
+            targets[s] = ts;
+        }
+
+        // 2. BFS 建立失敗連結，並把失敗節點的輸出合併進來
+        fail = new int[size];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int t : targets[ROOT]) {
+            fail[t] = ROOT;
+            queue.add(t);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int j = 0; j < labels[s].length; j++) {
+                char c = labels[s][j];
+                int t = targets[s][j];
+                int f = fail[s];
+                while (f != ROOT && next(f, c) < 0) {
+                    f = fail[f];
+                }
+                int ft = next(f, c);
+                fail[t] = (ft >= 0 && ft != t) ? ft : ROOT;
+                nodeOutputs.get(t).addAll(nodeOutputs.get(fail[t]));
+                queue.add(t);
+            }
+        }
+
+        outputs = new int[size][];
+        for (int s = 0; s < size; s++) {
+            List<Integer> out = nodeOutputs.get(s);
+            int[] arr = new int[out.size()];
+            for (int j = 0; j < arr.length; j++) {
+                arr[j] = out.get(j);
+            }
+            outputs[s] = arr;
+        }
+    }
+
+    /**
+     * 由關鍵字清單建立比對器 (每次查詢建立一次即可)
+     */
+    public static KeywordMatcher compile(List<Keyword> keywords) {
+        return new KeywordMatcher(keywords);
+    }
+
+    public List<Keyword> getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * 單次掃描 text，回傳與 getKeywords() 同順序的出現次數
+     */
+    public int[] countAll(CharSequence text) {
+        int n = keywords.size();
+        int[] counts = new int[n];
+        // 每個關鍵字上一次被計入的結束位置，用來確保不重疊計數
+        int[] lastEnd = new int[n];
+
+        int state = ROOT;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = fold(text.charAt(i));
+            int t;
+            while ((t = next(state, c)) < 0 && state != ROOT) {
+                state = fail[state];
+            }
+            state = Math.max(t, ROOT);
+
+            for (int p : outputs[state]) {
+                int start = i + 1 - patternLengths[p];
+                if (start >= lastEnd[p]) {
+                    counts[p]++;
+                    lastEnd[p] = i + 1;
+                }
+            }
+        }
+
+        if (hasEmptyPattern) {
+            // 空字串在 regex 下會在每個位置 (含結尾) 各匹配一次
+            for (int p = 0; p < n; p++) {
+                if (patternLengths[p] == 0) {
+                    counts[p] = length + 1;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 單次掃描 text，回傳出現次數 > 0 的關鍵字
+     */
+    public Map<Keyword, Integer> countOccurrences(CharSequence text) {
+        int[] counts = countAll(text);
+        Map<Keyword, Integer> occurrences = new HashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                occurrences.put(keywords.get(i), counts[i]);
+            }
+        }
+        return occurrences;
+    }
+
+    private int next(int state, char c) {
+        char[] ls = labels[state];
+        int idx = Arrays.binarySearch(ls, c);
+        return idx >= 0 ? targets[state][idx] : -1;
+    }
+
+    /**
+     * 與 Pattern.CASE_INSENSITIVE (未加 UNICODE_CASE) 相同：只轉換 ASCII 大寫字母
+     */
+    private static char fold(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.searchengine.engine;
+
+import com.example.searchengine.model.Keyword;
+import com.example.searchengine.model.ProcessedPage;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 子頁候選連結的優先順序 (取代「文件順序第一個沒拜訪過的連結」)。
+ *
+ * 每個外連依下列訊號計分，只保留分數最高的 capacity 個 (bounded min-heap)：
+ * - 錨點文字、URL (解碼後) 命中查詢關鍵字：出現次數 * 權重
+ * - 與母頁同網域加分；社群分享、CDN / 靜態資源網域直接略過
+ * - 路徑深度：首頁 (導覽列) 扣分，1~4 層最好，太深扣分
+ * - 登入 / 註冊 / 分享、圖片 / CSS / JS 等資源、同頁錨點 (#) 直接略過
+ */
+public final class LinkFrontier {
+
+    private static final int SAME_HOST_BONUS = 2;
+    private static final int HOME_PAGE_PENALTY = -3;
+    private static final int DEEP_PATH_PENALTY = -1;
+    private static final int MAX_GOOD_DEPTH = 4;
+
+    // 路徑中任一段 (去掉副檔名) 是這些字就略過，例如 /member/login.php、/share?u=...
+    private static final Set<String> USELESS_PATH_SEGMENTS = Set.of(
+            "login", "signin", "sign-in", "signup", "sign-up", "register", "logout", "account",
+            "share", "sharer", "intent", "privacy", "terms", "cart", "checkout", "wp-admin", "wp-login");
+
+    private static final List<String> ASSET_EXTENSIONS = Arrays.asList(
+            ".jpg", ".jpeg", ".png", ".gif", ".webp", ".svg", ".ico", ".css", ".js", ".json", ".xml",
+            ".pdf", ".zip", ".rar", ".mp3", ".mp4", ".avi", ".mov", ".woff", ".woff2", ".ttf");
+
+    private static final List<String> USELESS_HOSTS = Arrays.asList(
+            "facebook.com", "twitter.com", "x.com", "instagram.com", "line.me",
+            "plus.google.com", "pinterest.com", "linkedin.com", "accounts.google.com", "play.google.com",
+            "apps.apple.com", "googleapis.com", "gstatic.com", "cloudfront.net", "akamaihd.net",
+            "doubleclick.net", "googletagmanager.com");
+
+    private static final List<String> CDN_HOST_PREFIXES = Arrays.asList("cdn.", "static.", "img.", "images.", "assets.");
+
+    /**
+     * 一個候選子頁 (URL 已去掉 #fragment)
+     */
+    public static final class ScoredLink {
+        private final String url;
+        private final String anchorText;
+        private final int score;
+
+        ScoredLink(String url, String anchorText, int score) {
+            this.url = url;
+            this.anchorText = anchorText;
+            this.score = score;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getAnchorText() {
+            return anchorText;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    private LinkFrontier() {
+    }
+
+    /**
+     * 由母頁的外連挑出最值得抓的 capacity 個，依分數高 -> 低 (同分維持文件順序)
+     */
+    public static List<ScoredLink> select(ProcessedPage content, String parentUrl, KeywordMatcher keywordMatcher, int capacity) {
+        if (capacity <= 0 || content == null || content.getLinks().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String parent = stripFragment(parentUrl);
+        String parentHost = host(parent);
+
+        // min-heap：堆頂是目前保留的最差候選；同分時較晚出現的較差
+        Comparator<Candidate> worstFirst = Comparator.<Candidate>comparingInt(c -> c.link.score)
+                .thenComparing(Comparator.<Candidate>comparingInt(c -> c.order).reversed());
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(capacity + 1, worstFirst);
+        Set<String> seen = new HashSet<>();
+
+        int order = 0;
+        for (ProcessedPage.Link link : content.getLinks()) {
+            String url = stripFragment(link.getUrl());
+            if (url.equals(parent) || !seen.add(url)) {
+                continue; // 同頁錨點或重複連結
+            }
+            Integer score = score(url, link.getAnchorText(), parentHost, keywordMatcher);
+            if (score == null) {
+                continue;
+            }
+            heap.add(new Candidate(new ScoredLink(url, link.getAnchorText(), score), order++));
+            if (heap.size() > capacity) {
+                heap.poll();
+            }
+        }
+
+        List<Candidate> best = new ArrayList<>(heap);
+        best.sort(worstFirst.reversed());
+        List<ScoredLink> result = new ArrayList<>(best.size());
+        for (Candidate candidate : best) {
+            result.add(candidate.link);
+        }
+        return result;
+    }
+
+    /**
+     * 連結分數；明顯沒用的連結回傳 null
+     */
+    static Integer score(String url, String anchorText, String parentHost, KeywordMatcher keywordMatcher) {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        String lowerPath = path.toLowerCase(Locale.ROOT);
+
+        if (host.isEmpty() || isUselessHost(host)) {
+            return null;
+        }
+        for (String extension : ASSET_EXTENSIONS) {
+            if (lowerPath.endsWith(extension)) {
+                return null;
+            }
+        }
+        int depth = 0;
+        for (String segment : lowerPath.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            depth++;
+            int dot = segment.indexOf('.');
+            if (USELESS_PATH_SEGMENTS.contains(dot >= 0 ? segment.substring(0, dot) : segment)) {
+                return null;
+            }
+        }
+
+        int score = 0;
+
+        // 1. 錨點文字 + URL 命中查詢關鍵字 (URL 先解碼，中文關鍵字才比對得到)
+        score += keywordScore(keywordMatcher, anchorText);
+        score += keywordScore(keywordMatcher, decode(path + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery())));
+
+        // 2. 網域
+        if (host.equals(parentHost)) {
+            score += SAME_HOST_BONUS;
+        }
+
+        // 3. 路徑深度
+        if (depth == 0 && uri.getRawQuery() == null) {
+            score += HOME_PAGE_PENALTY;
+        } else if (depth > MAX_GOOD_DEPTH) {
+            score += DEEP_PATH_PENALTY * (depth - MAX_GOOD_DEPTH);
+        }
+        return score;
+    }
+
+    private static int keywordScore(KeywordMatcher keywordMatcher, String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int[] counts = keywordMatcher.countAll(text);
+        List<Keyword> keywords = keywordMatcher.getKeywords();
+        double score = 0;
+        for (int i = 0; i < counts.length; i++) {
+            score += counts[i] * keywords.get(i).getWeight();
+        }
+        return (int) score;
+    }
+
+    private static boolean isUselessHost(String host) {
+        for (String useless : USELESS_HOSTS) {
+            if (host.equals(useless) || host.endsWith("." + useless)) {
+                return true;
+            }
+        }
+        for (String prefix : CDN_HOST_PREFIXES) {
+            if (host.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String decode(String raw) {
+        try {
+            return URLDecoder.decode(raw, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return raw;
+        }
+    }
+
+    private static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    static String stripFragment(String url) {
+        if (url == null) {
+            return "";
+        }
+        int hash = url.indexOf('#');
+        return hash >= 0 ? url.substring(0, hash) : url;
+    }
+
+    private static final class Candidate {
+        final ScoredLink link;
+        final int order;
+
+        Candidate(ScoredLink link, int order) {
+            this.link = link;
+            this.order = order;
+        }
+    }
+}
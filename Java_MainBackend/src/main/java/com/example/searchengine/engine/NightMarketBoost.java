@@ -0,0 +1,93 @@
+package com.example.searchengine.engine;
+
+import com.example.searchengine.model.NightMarketStore;
+
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * 單次查詢的夜市加分規則 (由 NightMarketRanker.forQuery 建立，該查詢的所有頁面共用)。
+ *
+ * 頁面提到的夜市若今天有營業、或位於查詢的行政區，就加分；
+ * 每頁最多計入 maxMarkets 個夜市 (依出現次數多寡)，避免夜市列表頁分數失控。
+ * 同名的夜市 (例如臺北市與苗栗縣的公館夜市) 只算一個：優先取位於查詢行政區、其次查詢縣市、再其次今天有營業的。
+ */
+public final class NightMarketBoost {
+
+    /**
+     * 不加分
+     */
+    public static final NightMarketBoost NONE =
+            new NightMarketBoost(null, null, null, new BitSet(), Collections.emptySet(), 0, 0, 0);
+
+    private final NightMarketStore store;
+    private final KeywordMatcher nameMatcher; // 與 store.getNames() 同順序
+    private final DayOfWeek today;
+    private final BitSet queriedDistricts;    // 位於查詢行政區的夜市 id
+    private final Set<String> queriedCities;  // 查詢中指定的縣市
+    private final int openTodayBoost;
+    private final int districtBoost;
+    private final int maxMarkets;
+
+    NightMarketBoost(NightMarketStore store, KeywordMatcher nameMatcher, DayOfWeek today, BitSet queriedDistricts,
+                     Set<String> queriedCities, int openTodayBoost, int districtBoost, int maxMarkets) {
+        this.store = store;
+        this.nameMatcher = nameMatcher;
+        this.today = today;
+        this.queriedDistricts = queriedDistricts;
+        this.queriedCities = queriedCities;
+        this.openTodayBoost = openTodayBoost;
+        this.districtBoost = districtBoost;
+        this.maxMarkets = maxMarkets;
+    }
+
+    /**
+     * 掃描頁面文字 (一次)，回傳加分並把明細寫進 scoreDetails，例如 "[今日營業] 士林夜市" -> "+10"
+     */
+    public int apply(CharSequence text, Map<String, String> scoreDetails) {
+        if (nameMatcher == null || maxMarkets <= 0 || text == null || text.length() == 0) {
+            return 0;
+        }
+
+        int[] counts = nameMatcher.countAll(text);
+        // 名稱 -> 代表的夜市 id (同名的只取一個)
+        Map<String, Integer> byName = new LinkedHashMap<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] > 0 && (store.isOpenOn(id, today) || queriedDistricts.get(id))) {
+                Integer chosen = byName.get(store.name(id));
+                if (chosen == null || preference(id) < preference(chosen)) {
+                    byName.put(store.name(id), id);
+                }
+            }
+        }
+        List<Integer> mentioned = new ArrayList<>(byName.values());
+        mentioned.sort((a, b) -> Integer.compare(counts[b], counts[a]));
+
+        int total = 0;
+        for (int id : mentioned.subList(0, Math.min(maxMarkets, mentioned.size()))) {
+            String name = store.name(id);
+            if (store.isOpenOn(id, today)) {
+                total += openTodayBoost;
+                scoreDetails.put("[今日營業] " + name, "+" + openTodayBoost);
+            }
+            if (queriedDistricts.get(id)) {
+                total += districtBoost;
+                scoreDetails.put("[同行政區] " + name + " (" + store.city(id) + store.district(id) + ")", "+" + districtBoost);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 同名夜市的優先順序 (小的優先)：查詢行政區 -> 查詢縣市 -> 今天有營業
+     */
+    private int preference(int id) {
+        if (queriedDistricts.get(id)) {
+            return 0;
+        }
+        if (queriedCities.contains(store.city(id))) {
+            return 1;
+        }
+        return store.isOpenOn(id, today) ? 2 : 3;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.searchengine.engine;
+
+import com.example.searchengine.model.Keyword;
+import com.example.searchengine.model.NightMarketStore;
+import com.example.searchengine.model.VoyageReRanker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 以本地的夜市資料 (NightMarketStore) 作為計分訊號，不需任何網路請求：
+ * 提到「今天有營業」或「位於查詢行政區」的夜市的頁面會加分 (見 NightMarketBoost)。
+ *
+ * 夜市清單重新載入後，下一次查詢就會使用新的 store。
+ */
+@Component
+public class NightMarketRanker {
+
+    private static final ZoneId TAIPEI = ZoneId.of("Asia/Taipei");
+
+    private final VoyageReRanker voyageReRanker;
+    private final int openTodayBoost;
+    private final int districtBoost;
+    private final int maxMarkets;
+
+    // 全部夜市名稱的比對器，store 換掉時才重建
+    private volatile Compiled compiled;
+
+    public NightMarketRanker(
+            VoyageReRanker voyageReRanker,
+            @Value("${ranking.night-market.open-today-boost:10}") int openTodayBoost,
+            @Value("${ranking.night-market.district-boost:10}") int districtBoost,
+            @Value("${ranking.night-market.max-markets-per-page:3}") int maxMarkets
+    ) {
+        this.voyageReRanker = voyageReRanker;
+        this.openTodayBoost = openTodayBoost;
+        this.districtBoost = districtBoost;
+        this.maxMarkets = maxMarkets;
+    }
+
+    /**
+     * 依查詢關鍵字建立這次查詢的加分規則 (今天 = 台北時間的今天)
+     */
+    public NightMarketBoost forQuery(List<Keyword> keywords) {
+        return forQuery(keywords, LocalDate.now(TAIPEI).getDayOfWeek());
+    }
+
+    public NightMarketBoost forQuery(List<Keyword> keywords, DayOfWeek today) {
+        NightMarketStore store = voyageReRanker.getCandidates().getNightMarketStore();
+        if (store.size() == 0 || (openTodayBoost <= 0 && districtBoost <= 0)) {
+            return NightMarketBoost.NONE;
+        }
+        Set<String> cities = queriedCities(store, keywords);
+        return new NightMarketBoost(store, matcherFor(store), today, queriedDistricts(store, keywords, cities), cities,
+                openTodayBoost, districtBoost, maxMarkets);
+    }
+
+    /**
+     * 查詢中的縣市 (例如 "基隆"、"臺北市")
+     */
+    private static Set<String> queriedCities(NightMarketStore store, List<Keyword> keywords) {
+        Set<String> cities = new HashSet<>();
+        for (String word : words(keywords)) {
+            cities.addAll(store.resolveCities(word));
+        }
+        return cities;
+    }
+
+    /**
+     * 可能是縣市 / 行政區 / 夜市名稱的查詢字 (去空白，至少 2 個字：單字 (例如 "東") 補上「區」會誤判)
+     */
+    private static List<String> words(List<Keyword> keywords) {
+        List<String> words = new ArrayList<>();
+        for (Keyword keyword : keywords) {
+            String word = keyword.getWord() == null ? "" : keyword.getWord().trim();
+            if (word.length() >= 2) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * 查詢中的行政區 (例如 "士林"、"士林區")，以及查詢中夜市所在的行政區 -> 位於這些行政區的夜市 id。
+     *
+     * 行政區一律限定在縣市裡：縣市來自查詢中的縣市 (cities) 或查詢中夜市所在的縣市；
+     * 查詢沒有指定縣市時，只接受只出現在一個縣市的行政區名稱 (例如 "中正區" 不算，"士林區" 算)。
+     */
+    private BitSet queriedDistricts(NightMarketStore store, List<Keyword> keywords, Set<String> cities) {
+        List<String> words = new ArrayList<>();
+        for (String word : words(keywords)) {
+            if (store.resolveCities(word).isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        BitSet ids = new BitSet(store.size());
+        Set<String> districtCities = new HashSet<>(cities);
+        List<String> districts = new ArrayList<>();
+        for (String word : words) {
+            BitSet markets = store.named(word);
+            if (markets.isEmpty()) {
+                String district = store.resolveDistrict(word);
+                if (district != null) {
+                    districts.add(district);
+                }
+                continue;
+            }
+            // 同名夜市 (例如 公館夜市) 有指定縣市時只取該縣市的
+            for (int market = markets.nextSetBit(0); market >= 0; market = markets.nextSetBit(market + 1)) {
+                if (!cities.isEmpty() && !cities.contains(store.city(market))) {
+                    continue;
+                }
+                if (!store.district(market).isEmpty()) {
+                    ids.or(store.inDistrict(store.city(market), store.district(market)));
+                }
+                districtCities.add(store.city(market));
+            }
+        }
+
+        for (String district : districts) {
+            Set<String> inCities = store.citiesOf(district);
+            if (districtCities.isEmpty()) {
+                if (inCities.size() == 1) {
+                    ids.or(store.inDistrict(inCities.iterator().next(), district));
+                }
+                continue;
+            }
+            for (String city : inCities) {
+                if (districtCities.contains(city)) {
+                    ids.or(store.inDistrict(city, district));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private KeywordMatcher matcherFor(NightMarketStore store) {
+        Compiled current = compiled;
+        if (current == null || current.store != store) {
+            List<Keyword> names = new ArrayList<>(store.size());
+            for (String name : store.getNames()) {
+                names.add(new Keyword(name, 1.0));
+            }
+            current = new Compiled(store, KeywordMatcher.compile(names));
+            compiled = current;
+        }
+        return current.matcher;
+    }
+
+    private static final class Compiled {
+        final NightMarketStore store;
+        final KeywordMatcher matcher;
+
+        Compiled(NightMarketStore store, KeywordMatcher matcher) {
+            this.store = store;
+            this.matcher = matcher;
+        }
+    }
+}
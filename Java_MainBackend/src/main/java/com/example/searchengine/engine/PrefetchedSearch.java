@@ -0,0 +1,83 @@
+package com.example.searchengine.engine;
+
+import com.example.searchengine.model.RootPageResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * 關鍵字分類還沒完成前就先送出的 Custom Search 查詢 (由 RootPageScorer.prefetch 建立)。
+ *
+ * - start：KeywordExtractionEngine 一確定組合關鍵字就呼叫，5 頁 API 請求立即送出
+ *   (呼叫端應先以 googleQueryFor 查過搜尋結果快取，命中時不要呼叫)
+ * - search：分類完成後，若實際要查的字串相同就直接用已送出的請求計分，不同則重新查詢
+ * - release：沒用到 (例如分類後的關鍵字權重不同、命中了別的快取項目) 時取消已送出的請求
+ */
+public final class PrefetchedSearch {
+
+    private final RootPageScorer rootPageScorer;
+    private final String querySuffix;
+
+    private String googleQuery;
+    private List<CompletableFuture<Map<String, String>>> pages;
+    private boolean used;
+
+    PrefetchedSearch(RootPageScorer rootPageScorer, String querySuffix) {
+        this.rootPageScorer = rootPageScorer;
+        this.querySuffix = querySuffix;
+    }
+
+    /**
+     * 實際送給 Google 的查詢字串 (與 SearchResultCache.QueryKey.getGoogleQuery 相同)
+     */
+    public String googleQueryFor(String combinedKeywords) {
+        return combinedKeywords + querySuffix;
+    }
+
+    /**
+     * @param combinedKeywords 空白分隔的關鍵字 (送 Google 時會再加上 querySuffix)
+     */
+    public synchronized void start(String combinedKeywords) {
+        if (pages != null) {
+            return;
+        }
+        googleQuery = googleQueryFor(combinedKeywords);
+        pages = rootPageScorer.queryPages(googleQuery);
+    }
+
+    /**
+     * 同 RootPageScorer.search；查詢字串與先送出的相同時沿用其結果
+     */
+    public CompletableFuture<List<RootPageResult>> search(String googleQuery,
+                                                          KeywordMatcher keywordMatcher,
+                                                          long deadlineNanos,
+                                                          Consumer<RootPageResult> onResult) {
+        List<CompletableFuture<Map<String, String>>> prefetched = claim(googleQuery);
+        if (prefetched == null) {
+            return rootPageScorer.search(googleQuery, keywordMatcher, deadlineNanos, onResult);
+        }
+        return rootPageScorer.score(prefetched, keywordMatcher, deadlineNanos, onResult);
+    }
+
+    /**
+     * 先送出的請求沒被 search 用到就取消
+     */
+    public synchronized void release() {
+        if (pages != null && !used) {
+            used = true;
+            for (CompletableFuture<Map<String, String>> page : pages) {
+                page.cancel(true);
+            }
+        }
+    }
+
+    private synchronized List<CompletableFuture<Map<String, String>>> claim(String googleQuery) {
+        if (pages == null || used || !googleQuery.equals(this.googleQuery)) {
+            return null;
+        }
+        used = true;
+        return pages;
+    }
+}
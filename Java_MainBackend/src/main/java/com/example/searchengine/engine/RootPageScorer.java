@@ -0,0 +1,391 @@
+package com.example.searchengine.engine;
+
+import com.example.searchengine.model.Page;
+import com.example.searchengine.model.ProcessedPage;
+import com.example.searchengine.model.RootPageResult;
+import com.example.searchengine.service.FetchExecutor;
+import com.example.searchengine.service.GoogleQuery;
+import com.example.searchengine.service.PageFetchService;
+import com.example.searchengine.service.SearchMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 把 Google 搜尋結果平行抓取、計分，並依分數排序(高->低)。
+ *
+ * - 每一頁 Google 結果 (10 筆) 一回來就開始抓網頁，不必等 50 筆到齊
+ * - 網頁以 PageFetchService.fetchAsync 非同步下載，下載完成才在共用的 FetchExecutor 上計分；
+ *   等待下載時不佔用執行緒 (同一個 pool 也要跑關鍵字處理與 reranker 呼叫)
+ * - 在 deadline 之前完成的頁面照常計分；deadline 一到，尚未完成的任務立即取消
+ *   (中斷執行緒並中止 HTTP 連線)，以 0 分 + cutOff=true 的結果代替
+ * - 頁面提到今天有營業、或位於查詢行政區的夜市會加分 (NightMarketRanker)，排序直接反映
+ * - root 頁計分後，子頁在背景平行抓取 (crawl.*)，分數陸續加進 root 頁；deadline 到時
+ *   子頁還沒抓完的 root 頁以「目前已完成部分」的分數回傳 (cutOff=true)，不會被子頁拖住
+ */
+@Component
+public class RootPageScorer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RootPageScorer.class);
+
+    private static final String DELIMITER = "DSPROJECT/x01";
+
+    private final KeywordCounterEngine keywordCounterEngine;
+    private final PageFetchService pageFetchService;
+    private final FetchExecutor fetchExecutor;
+    private final NightMarketRanker nightMarketRanker;
+    private final SearchMetrics searchMetrics;
+
+    public RootPageScorer(KeywordCounterEngine keywordCounterEngine, PageFetchService pageFetchService,
+                          FetchExecutor fetchExecutor, NightMarketRanker nightMarketRanker,
+                          SearchMetrics searchMetrics) {
+        this.keywordCounterEngine = keywordCounterEngine;
+        this.pageFetchService = pageFetchService;
+        this.fetchExecutor = fetchExecutor;
+        this.nightMarketRanker = nightMarketRanker;
+        this.searchMetrics = searchMetrics;
+    }
+
+    /**
+     * 以 googleQuery 查詢 Google Custom Search，並對結果平行計分
+     */
+    public CompletableFuture<List<RootPageResult>> search(String googleQuery,
+                                                          KeywordMatcher keywordMatcher,
+                                                          long deadlineNanos,
+                                                          Consumer<RootPageResult> onResult) {
+        return score(queryPages(googleQuery), keywordMatcher, deadlineNanos, onResult);
+    }
+
+    /**
+     * 送出 5 頁 Custom Search 請求 (GoogleQuery.queryPagesAsync)
+     */
+    List<CompletableFuture<Map<String, String>>> queryPages(String googleQuery) {
+        return new GoogleQuery(googleQuery, searchMetrics).queryPagesAsync();
+    }
+
+    /**
+     * 讓呼叫端在關鍵字分類完成前先送出 Custom Search (見 PrefetchedSearch)
+     *
+     * @param querySuffix 送 Google 時附加在關鍵字後面的字串 (與 SearchResultCache.QueryKey 相同)
+     */
+    public PrefetchedSearch prefetch(String querySuffix) {
+        return new PrefetchedSearch(this, querySuffix);
+    }
+
+    /**
+     * 對依排名順序排列的 Google 結果頁 (GoogleQuery.queryPagesAsync) 平行計分。
+     *
+     * @param resultPages   每個 future 是一頁 (title + snippet) -> url
+     * @param deadlineNanos System.nanoTime 基準的 deadline
+     * @param onResult      每頁於 deadline 前完成時呼叫 (串流用，可為 null)
+     * @return 全部完成或 deadline 到時完成的排序結果；第 1 頁 Google 結果失敗則以例外完成。
+     *         取消它會中止還在進行的下載與子頁抓取
+     */
+    public CompletableFuture<List<RootPageResult>> score(List<CompletableFuture<Map<String, String>>> resultPages,
+                                                         KeywordMatcher keywordMatcher,
+                                                         long deadlineNanos,
+                                                         Consumer<RootPageResult> onResult) {
+        ScoringRun run = new ScoringRun(resultPages, keywordMatcher, onResult, deadlineNanos);
+        run.start();
+        return run.done;
+    }
+
+    /**
+     * 同上，給已經拿到全部結果的呼叫端使用
+     */
+    public CompletableFuture<List<RootPageResult>> score(Map<String, String> initialResults,
+                                                         KeywordMatcher keywordMatcher,
+                                                         long deadlineNanos,
+                                                         Consumer<RootPageResult> onResult) {
+        return score(Collections.singletonList(CompletableFuture.completedFuture(initialResults)),
+                keywordMatcher, deadlineNanos, onResult);
+    }
+
+    /**
+     * 依分數排序(高->低)，回傳新的 List；同分時維持 Google 原本的排名順序
+     */
+    public static List<RootPageResult> rankByScore(List<RootPageResult> results) {
+        List<RootPageResult> ranked = new ArrayList<>(results);
+        ranked.sort((r1, r2) -> Integer.compare(r2.getAggregatedScore(), r1.getAggregatedScore()));
+        return ranked;
+    }
+
+    /**
+     * 單次請求的計分狀態 (所有欄位以 this 為鎖)
+     */
+    private final class ScoringRun {
+        private final List<CompletableFuture<Map<String, String>>> resultPages;
+        private final KeywordMatcher keywordMatcher;
+        private final NightMarketBoost nightMarketBoost;
+        private final Consumer<RootPageResult> onResult;
+        private final long deadlineNanos;
+        private final CrawlContext crawlContext;
+        private final CompletableFuture<List<RootPageResult>> done = new CompletableFuture<>();
+
+        // 依 Google 排名順序排列；每格只會被「任務完成」或「deadline 到」其中一方寫入
+        private final List<Map.Entry<String, String>> entries = new ArrayList<>();
+        private final List<RootPageResult> slots = new ArrayList<>();
+        // root 頁已計分、子頁還在抓的中間結果 (deadline 到時以此代替)
+        private final List<PartialResult> partials = new ArrayList<>();
+        // 每格是該頁的下載 (deadline 到時取消)；不需下載的頁面為 null
+        private final List<CompletableFuture<?>> tasks = new ArrayList<>();
+        private final Set<String> seen = new HashSet<>();
+        private int pendingPages;
+        private int pendingTasks;
+        private boolean closed;
+
+        ScoringRun(List<CompletableFuture<Map<String, String>>> resultPages, KeywordMatcher keywordMatcher,
+                   Consumer<RootPageResult> onResult, long deadlineNanos) {
+            this.resultPages = resultPages;
+            this.keywordMatcher = keywordMatcher;
+            this.nightMarketBoost = nightMarketRanker.forQuery(keywordMatcher.getKeywords());
+            this.onResult = onResult;
+            this.deadlineNanos = deadlineNanos;
+            this.crawlContext = keywordCounterEngine.newCrawlContext(deadlineNanos);
+            this.pendingPages = resultPages.size();
+        }
+
+        void start() {
+            if (resultPages.isEmpty()) {
+                done.complete(Collections.emptyList());
+                return;
+            }
+            // 呼叫端取消 (所有等待者都已離開，例如串流的 client 斷線)：中止所有下載與子頁抓取
+            done.whenComplete((results, e) -> {
+                if (done.isCancelled()) {
+                    onCancelled();
+                }
+            });
+            for (CompletableFuture<Map<String, String>> page : resultPages) {
+                page.whenComplete(this::onPage);
+            }
+
+            // deadline 到：取消還沒回來的 Google 結果頁與所有還沒完成的任務
+            long delayNanos = Math.max(0L, deadlineNanos - System.nanoTime());
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(this::onDeadline);
+        }
+
+        private void onPage(Map<String, String> pageResults, Throwable error) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (error != null) {
+                    // 只有第 1 頁失敗會走到這裡 (之後的頁失敗會被視為空頁)
+                    closed = true;
+                    cancelAll();
+                    done.completeExceptionally(error);
+                    return;
+                }
+                for (Map.Entry<String, String> entry : pageResults.entrySet()) {
+                    if (seen.add(entry.getKey())) {
+                        submit(new AbstractMap.SimpleImmutableEntry<>(entry));
+                    }
+                }
+                // 全部送出後才扣掉這一頁：不需下載的結果會在 submit 裡同步完成，不能提早結束
+                pendingPages--;
+                finishIfComplete();
+            }
+        }
+
+        private void submit(Map.Entry<String, String> entry) {
+            int index = slots.size();
+            // root 頁本身不會再被當成其它 root 頁的子頁重複計分
+            crawlContext.markVisited(entry.getValue());
+            entries.add(entry);
+            slots.add(null);
+            partials.add(null);
+            tasks.add(null);
+            pendingTasks++;
+            // 只負責 root 頁；子頁在背景抓，不等待
+            scoreRootPage(index, entry).whenComplete((rpr, e) -> {
+                RootPageResult result = rpr;
+                if (e != null) {
+                    if (e instanceof CancellationException || e.getCause() instanceof CancellationException) {
+                        return; // deadline 到被取消，已以 cutOff 結果代替
+                    }
+                    logger.error("Error scoring page: {}", entry.getValue(), e);
+                    result = zeroResult(entry, false);
+                }
+                if (complete(index, result) && onResult != null) {
+                    onResult.accept(result);
+                }
+            });
+        }
+
+        private synchronized void setPartial(int index, PartialResult partial) {
+            partials.set(index, partial);
+        }
+
+        private synchronized boolean complete(int index, RootPageResult rpr) {
+            if (slots.get(index) != null) {
+                return false; // 已被 deadline 標記為 cutOff
+            }
+            slots.set(index, rpr);
+            pendingTasks--;
+            finishIfComplete();
+            return true;
+        }
+
+        private void onDeadline() {
+            int cutOff = 0;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                for (int k = 0; k < slots.size(); k++) {
+                    if (slots.get(k) == null) {
+                        PartialResult partial = partials.get(k);
+                        slots.set(k, partial != null ? partial.toResult(true) : cutOffResult(entries.get(k)));
+                        if (tasks.get(k) != null) {
+                            tasks.get(k).cancel(true);
+                        }
+                        cutOff++;
+                    }
+                }
+                crawlContext.cancel();
+                for (CompletableFuture<Map<String, String>> page : resultPages) {
+                    page.cancel(true);
+                }
+                done.complete(rankByScore(slots));
+            }
+            if (cutOff > 0) {
+                logger.info("Deadline reached, cut off {} / {} pages", cutOff, slots.size());
+            }
+        }
+
+        private synchronized void onCancelled() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelAll();
+        }
+
+        private void finishIfComplete() {
+            if (!closed && pendingPages == 0 && pendingTasks == 0) {
+                closed = true;
+                // 第四步：依最終分數排序(高->低)
+                done.complete(rankByScore(slots));
+            }
+        }
+
+        /**
+         * 單一搜尋結果：拆出 title / snippet，抓網頁並計分，再在背景抓子頁 (在 submit 裡、持有鎖時呼叫)
+         */
+        private CompletableFuture<RootPageResult> scoreRootPage(int index, Map.Entry<String, String> entry) {
+            String result = entry.getKey();
+            String title = "";
+            String snippet = "";
+            String pageUrl = entry.getValue();
+
+            // 使用 split 方法分割字串
+            String[] parts = result.split(DELIMITER);
+
+            // 驗證分割後的結果
+            if (parts.length == 2) {
+                title = parts[0];
+                snippet = parts[1];
+            } else {
+                logger.warn("格式不正確，無法分割字串: {}", result);
+                return CompletableFuture.completedFuture(new RootPageResult("", pageUrl, 0, "", new HashMap<>()));
+            }
+
+            // (1) 過濾 PDF/下載 連結
+            if (isDownloadLink(pageUrl)) {
+                logger.debug("Skip download link: {}", pageUrl);
+                return CompletableFuture.completedFuture(new RootPageResult(title, pageUrl, 0, snippet, new HashMap<>()));
+            }
+
+            // (2) 非同步抓網頁 (已解析為 body 文字 + 外連)；deadline 到時取消
+            CompletableFuture<ProcessedPage> fetch = pageFetchService.fetchAsync(pageUrl);
+            tasks.set(index, fetch);
+
+            String pageTitle = title;
+            String pageSnippet = snippet;
+            return fetch.thenComposeAsync(processedPage -> {
+                if (processedPage.isEmpty()) {
+                    // 403 或其它失敗 => 分數=0
+                    return CompletableFuture.completedFuture(
+                            new RootPageResult(pageTitle, pageUrl, 0, pageSnippet, new HashMap<>()));
+                }
+
+                // (3) root 頁計分 (含夜市營業日 / 行政區加分)
+                Page rootPage = keywordCounterEngine.scorePage(processedPage, keywordMatcher, nightMarketBoost, pageTitle, pageUrl);
+                PartialResult partial = new PartialResult(rootPage, pageSnippet);
+                setPartial(index, partial);
+
+                // (4) 子頁平行抓取，分數陸續加進 rootPage
+                return keywordCounterEngine
+                        .crawlChildren(rootPage, processedPage, keywordMatcher, nightMarketBoost, crawlContext)
+                        .handle((v, e) -> partial.toResult(false));
+            }, fetchExecutor);
+        }
+
+        private void cancelAll() {
+            crawlContext.cancel();
+            for (CompletableFuture<?> task : tasks) {
+                if (task != null) {
+                    task.cancel(true);
+                }
+            }
+            for (CompletableFuture<Map<String, String>> page : resultPages) {
+                page.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * root 頁已計分、子頁可能還在抓的結果；toResult 時取當下的聚合分數
+     */
+    private static final class PartialResult {
+        private final Page rootPage;
+        private final String snippet;
+
+        PartialResult(Page rootPage, String snippet) {
+            this.rootPage = rootPage;
+            this.snippet = snippet;
+        }
+
+        RootPageResult toResult(boolean cutOff) {
+            Map<String, String> scoreDetails = new HashMap<>(rootPage.getScoreDetails());
+            for (Page child : rootPage.getChildren()) {
+                int childScore = child.getAggregatedScore();
+                if (childScore > 0) {
+                    scoreDetails.put("[子頁] " + child.getUrl(), "+" + childScore);
+                }
+            }
+            return new RootPageResult(rootPage.getTitle(), rootPage.getUrl(), rootPage.getAggregatedScore(),
+                    snippet, scoreDetails, cutOff);
+        }
+    }
+
+    /**
+     * 超過 deadline 被取消的頁面：保留 Google 的 title / snippet，分數 0
+     */
+    private static RootPageResult cutOffResult(Map.Entry<String, String> entry) {
+        return zeroResult(entry, true);
+    }
+
+    private static RootPageResult zeroResult(Map.Entry<String, String> entry, boolean cutOff) {
+        String[] parts = entry.getKey().split(DELIMITER);
+        String title = parts.length == 2 ? parts[0] : "";
+        String snippet = parts.length == 2 ? parts[1] : "";
+        return new RootPageResult(title, entry.getValue(), 0, snippet, new HashMap<>(), cutOff);
+    }
+
+    private static boolean isDownloadLink(String url) {
+        String lower = url.toLowerCase();
+        return lower.endsWith(".pdf")
+            || lower.endsWith(".zip")
+            || lower.contains("download.ashx")
+            || lower.contains("/download/");
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.searchengine.engine;
+
+/**
+ * 已拜訪 URL 的集合，只存每個 URL 的 64-bit hash (open addressing, linear probing)。
+ *
+ * 每筆只佔 8 bytes，不保留 URL 字串；兩個不同 URL 的 hash 相同的機率約 n² / 2^65，
+ * 單次搜尋頂多幾百個 URL，可以忽略 (碰撞時只是少抓一個子頁)。
+ */
+final class VisitedUrlSet {
+
+    private static final int INITIAL_CAPACITY = 64; // 2 的次方
+    private static final long EMPTY = 0L;
+
+    private long[] slots = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * 加入 url；已存在時回傳 false
+     */
+    synchronized boolean add(String url) {
+        long hash = hash(url);
+        if (insert(slots, hash)) {
+            size++;
+            if (size * 2 > slots.length) {
+                grow();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    synchronized boolean contains(String url) {
+        long hash = hash(url);
+        int mask = slots.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            if (slots[i] == EMPTY) {
+                return false;
+            }
+            if (slots[i] == hash) {
+                return true;
+            }
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private static boolean insert(long[] table, long hash) {
+        int mask = table.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            if (table[i] == EMPTY) {
+                table[i] = hash;
+                return true;
+            }
+            if (table[i] == hash) {
+                return false;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] bigger = new long[slots.length * 2];
+        for (long hash : slots) {
+            if (hash != EMPTY) {
+                insert(bigger, hash);
+            }
+        }
+        slots = bigger;
+    }
+
+    /**
+     * FNV-1a (64-bit) 再做一次 mix，讓低位元也分散；0 保留給空格
+     */
+    static long hash(String url) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            h ^= url.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1L : h;
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.searchengine.model;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import okhttp3.*;
 
 import java.io.IOException;
@@ -8,6 +11,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -17,7 +21,30 @@ public class CKIPTransformer {
     private final OkHttpClient client = new OkHttpClient();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // 同一句話的斷詞結果固定不變，依輸入字串快取
+    private final Cache<String, List<String>> cache;
+
+    public CKIPTransformer(@Value("${ckip.cache.max-entries:2000}") long maxEntries) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+    }
+
+    public long cacheSize() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats cacheStats() {
+        return cache.stats();
+    }
+
     public List<String> tokenize(String input) throws IOException {
+        List<String> cached = cache.getIfPresent(input);
+        if (cached != null) {
+            return cached;
+        }
+
         // 使用 HashMap 初始化請求參數
         Map<String, String> requestBody = new HashMap<>();
         requestBody.put("text", input);
@@ -39,7 +66,13 @@ public class CKIPTransformer {
 
             // 解析響應 JSON
             Map<String, Object> responseMap = objectMapper.readValue(response.body().string(), Map.class);
-            return (List<String>) responseMap.get("keywords");
+            List<String> keywords = (List<String>) responseMap.get("keywords");
+            if (keywords == null) {
+                throw new IOException("Missing keywords in response");
+            }
+            List<String> result = List.copyOf(keywords);
+            cache.put(input, result);
+            return result;
         }
     }
 }
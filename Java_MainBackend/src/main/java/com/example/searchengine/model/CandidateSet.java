@@ -0,0 +1,189 @@
+package com.example.searchengine.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * reranker 的候選清單 (縣市 + 夜市名稱)，建立後不可變，所有查詢共用：
+ *
+ * - documents：合併好的候選陣列 (縣市在前)，不必每次查詢都重新組合
+ * - categoryOf：document -> 類別的 hash 索引，取代 List.contains 的線性搜尋
+ * - documentsJson：預先序列化好的 JSON 陣列 (UTF-8 bytes)，送 /rerank_batch 時直接寫出，不再複製
+ * - nightMarkets：CSV 其它欄位 (行政區 / 路段、營業日)
+ * - nightMarketStore：同一份資料的欄位式索引 (依名稱 / 行政區 / 營業日查詢)
+ */
+public final class CandidateSet {
+
+    public static final String COUNTY_CITY = "County/City";
+    public static final String NIGHT_MARKET_NAME = "Night Market Name";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final byte[] QUERIES_PREFIX = "{\"queries\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DOCUMENTS_PREFIX = ",\"documents\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "}".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, List<String>> keywordLists;
+    private final List<String> documents;
+    private final Map<String, String> categoryByDocument;
+    private final byte[] documentsJson;
+    private final List<NightMarketInfo> nightMarkets;
+    private final Map<String, NightMarketInfo> nightMarketByName;
+    private final NightMarketStore nightMarketStore;
+
+    private CandidateSet(Map<String, List<String>> keywordLists, List<NightMarketInfo> nightMarkets) {
+        // 縣市優先，其次夜市，其餘類別依原順序
+        Map<String, List<String>> ordered = new LinkedHashMap<>();
+        for (String category : Arrays.asList(COUNTY_CITY, NIGHT_MARKET_NAME)) {
+            ordered.put(category, List.copyOf(keywordLists.getOrDefault(category, Collections.emptyList())));
+        }
+        for (Map.Entry<String, List<String>> entry : keywordLists.entrySet()) {
+            ordered.putIfAbsent(entry.getKey(), List.copyOf(entry.getValue()));
+        }
+        this.keywordLists = Collections.unmodifiableMap(ordered);
+
+        List<String> combined = new ArrayList<>();
+        Map<String, String> categories = new HashMap<>();
+        for (String category : Arrays.asList(COUNTY_CITY, NIGHT_MARKET_NAME)) {
+            for (String document : ordered.get(category)) {
+                combined.add(document);
+                categories.putIfAbsent(document, category); // 同名時以先出現的類別為準
+            }
+        }
+        this.documents = List.copyOf(combined);
+        this.categoryByDocument = Map.copyOf(categories);
+
+        try {
+            this.documentsJson = OBJECT_MAPPER.writeValueAsBytes(documents);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.nightMarkets = List.copyOf(nightMarkets);
+        this.nightMarketByName = byName(this.nightMarkets);
+        this.nightMarketStore = NightMarketStore.of(this.nightMarkets);
+    }
+
+    private CandidateSet(CandidateSet names, List<NightMarketInfo> nightMarkets) {
+        this.keywordLists = names.keywordLists;
+        this.documents = names.documents;
+        this.categoryByDocument = names.categoryByDocument;
+        this.documentsJson = names.documentsJson;
+
+        this.nightMarkets = List.copyOf(nightMarkets);
+        this.nightMarketByName = byName(this.nightMarkets);
+        this.nightMarketStore = NightMarketStore.of(this.nightMarkets);
+    }
+
+    private static Map<String, NightMarketInfo> byName(List<NightMarketInfo> nightMarkets) {
+        Map<String, NightMarketInfo> byName = new HashMap<>();
+        for (NightMarketInfo info : nightMarkets) {
+            byName.putIfAbsent(info.getName(), info);
+        }
+        return Map.copyOf(byName);
+    }
+
+    /**
+     * 由 類別 -> 名稱清單 建立 (會複製一份，之後原本的 Map 再變動也不影響)
+     */
+    public static CandidateSet of(Map<String, List<String>> keywordLists) {
+        return new CandidateSet(keywordLists, Collections.emptyList());
+    }
+
+    /**
+     * 同上，並附上 CSV 每一列的夜市資訊
+     */
+    public static CandidateSet of(Map<String, List<String>> keywordLists, List<NightMarketInfo> nightMarkets) {
+        return new CandidateSet(keywordLists, nightMarkets);
+    }
+
+    /**
+     * 名稱清單不變、只有 CSV 其它欄位 (行政區 / 路段、營業日) 變動時使用：
+     * 沿用合併陣列、類別索引與預先序列化的 JSON，只換夜市資訊
+     */
+    public CandidateSet withNightMarkets(List<NightMarketInfo> nightMarkets) {
+        return new CandidateSet(this, nightMarkets);
+    }
+
+    /**
+     * 不可修改的 類別 -> 名稱清單 (縣市在前)
+     */
+    public Map<String, List<String>> getKeywordLists() {
+        return keywordLists;
+    }
+
+    /**
+     * 合併後的候選清單 (縣市 + 夜市)，不可修改
+     */
+    public List<String> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * document 所屬類別 (County/City 或 Night Market Name)；不在清單中回傳 null
+     */
+    public String categoryOf(String document) {
+        return document == null ? null : categoryByDocument.get(document);
+    }
+
+    /**
+     * /rerank_batch 的請求內容：只序列化 queries，documents 直接使用預先序列化好的 bytes
+     */
+    public BatchRequest batchRequest(List<String> queries) throws JsonProcessingException {
+        return new BatchRequest(OBJECT_MAPPER.writeValueAsBytes(queries));
+    }
+
+    /**
+     * {"queries": [...], "documents": [...]}，寫出時不再複製 documents
+     */
+    public final class BatchRequest {
+        private final byte[] queriesJson;
+
+        private BatchRequest(byte[] queriesJson) {
+            this.queriesJson = queriesJson;
+        }
+
+        public long contentLength() {
+            return QUERIES_PREFIX.length + queriesJson.length + DOCUMENTS_PREFIX.length
+                    + documentsJson.length + SUFFIX.length;
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(QUERIES_PREFIX);
+            out.write(queriesJson);
+            out.write(DOCUMENTS_PREFIX);
+            out.write(documentsJson);
+            out.write(SUFFIX);
+        }
+    }
+
+    /**
+     * CSV 每一列的夜市資訊 (依 CSV 順序)，不可修改
+     */
+    public List<NightMarketInfo> getNightMarkets() {
+        return nightMarkets;
+    }
+
+    /**
+     * 依夜市名稱查 CSV 資訊；找不到回傳 null
+     */
+    public NightMarketInfo nightMarketInfo(String name) {
+        return name == null ? null : nightMarketByName.get(name);
+    }
+
+    /**
+     * 夜市資料的欄位式索引，跟著 CandidateSet 一起在重新載入時替換
+     */
+    public NightMarketStore getNightMarketStore() {
+        return nightMarketStore;
+    }
+
+    public int size() {
+        return documents.size();
+    }
+}
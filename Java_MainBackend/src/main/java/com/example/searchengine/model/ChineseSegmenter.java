@@ -0,0 +1,359 @@
+package com.example.searchengine.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM 內的中文斷詞 (字典 + 動態規劃)，在呼叫 CKIP (Python 服務) 之前先試：
+ *
+ * - 詞庫：縣市、夜市名稱、行政區 (來自 VoyageReRanker 的 CandidateSet)、常見小吃 (segmenter/food_terms.txt)、
+ *   以及 CKIP 之前斷出來的詞 (learn)
+ * - 以最少詞數切分 (未知字成本較高)，停用詞 (我、想、推薦、哪裡…) 與單字不輸出，與 CKIP 端的過濾一致
+ * - confidence = 被詞庫涵蓋的字數 / 總字數；低於 segmenter.min-confidence 時呼叫端應改用 CKIP
+ *
+ * 夜市清單重新載入或學到新詞後，下一次斷詞時重建詞庫。
+ */
+@Component
+public class ChineseSegmenter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChineseSegmenter.class);
+
+    private static final String FOOD_TERMS_RESOURCE = "/segmenter/food_terms.txt";
+
+    // 未知字的成本 (詞庫中的詞不論長短成本都是 1)
+    private static final double UNKNOWN_CHAR_COST = 2.0;
+    private static final int MAX_LEARNED_WORD_LENGTH = 12;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "我", "你", "他", "她", "我們", "想", "想要", "要", "去", "吃", "喝", "的", "了", "在", "有", "和", "跟",
+            "與", "或", "是", "嗎", "呢", "吧", "啊", "哪", "裡", "哪裡", "哪邊", "哪家", "哪間", "什麼", "甚麼",
+            "怎麼", "推薦", "好吃", "好喝", "附近", "請問", "一下", "一些", "可以", "還有", "以及", "還是", "最",
+            "很", "都", "也", "就", "到", "從", "給", "比較", "有名", "知名", "必吃", "人氣", "排隊", "一個", "這",
+            "那", "這裡", "那裡", "今天", "今晚", "晚上", "明天", "週末", "現在", "間", "家", "些", "個", "幾",
+            "多少", "便宜", "好玩", "值得", "逛", "買", "找", "看", "哪些", "有沒有", "介紹", "一起", "附近的");
+
+    private final VoyageReRanker voyageReRanker;
+    private final double minConfidence;
+    private final int maxLearnedWords;
+    private final Set<String> foodTerms;
+    private final Set<String> learnedWords = ConcurrentHashMap.newKeySet();
+
+    private volatile Lexicon lexicon;
+    private volatile boolean learnedChanged;
+
+    public ChineseSegmenter(VoyageReRanker voyageReRanker) {
+        this(voyageReRanker, 0.85, 10000);
+    }
+
+    @Autowired
+    public ChineseSegmenter(
+            VoyageReRanker voyageReRanker,
+            @Value("${segmenter.min-confidence:0.85}") double minConfidence,
+            @Value("${segmenter.max-learned-words:10000}") int maxLearnedWords
+    ) {
+        this.voyageReRanker = voyageReRanker;
+        this.minConfidence = minConfidence;
+        this.maxLearnedWords = maxLearnedWords;
+        this.foodTerms = loadFoodTerms();
+    }
+
+    /**
+     * 斷詞結果
+     */
+    public static class Segmentation {
+        private final List<String> tokens;
+        private final double confidence;
+        private final boolean confident;
+
+        Segmentation(List<String> tokens, double confidence, boolean confident) {
+            this.tokens = tokens;
+            this.confidence = confidence;
+            this.confident = confident;
+        }
+
+        /**
+         * 要送去分類的詞 (已去掉停用詞與單字)
+         */
+        public List<String> getTokens() {
+            return tokens;
+        }
+
+        /**
+         * 被詞庫涵蓋的字數比例 (0 ~ 1)
+         */
+        public double getConfidence() {
+            return confidence;
+        }
+
+        /**
+         * confidence 達到 segmenter.min-confidence，可以不必再問 CKIP
+         */
+        public boolean isConfident() {
+            return confident;
+        }
+    }
+
+    public Segmentation segment(String input) {
+        if (input == null || input.isEmpty()) {
+            return new Segmentation(Collections.emptyList(), 0.0, false);
+        }
+        Lexicon current = currentLexicon();
+
+        // 正規化 (台 -> 臺、英文轉小寫) 後比對，輸出仍取原字串
+        String text = input;
+        String normalized = normalize(text);
+        int n = text.length();
+
+        // cost[i]：切完前 i 個字的最小成本；from[i] / kind[i]：最後一段的起點與種類
+        double[] cost = new double[n + 1];
+        int[] from = new int[n + 1];
+        Kind[] kind = new Kind[n + 1];
+        Arrays.fill(cost, Double.MAX_VALUE);
+        cost[0] = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (cost[i] == Double.MAX_VALUE) {
+                continue;
+            }
+            char c = normalized.charAt(i);
+            if (Character.isWhitespace(c) || isPunctuation(c)) {
+                relax(cost, from, kind, i, i + 1, cost[i], Kind.SEPARATOR);
+                continue;
+            }
+            if (isAsciiLetterOrDigit(c)) {
+                // 英數字連在一起算一段 (例如 "101")
+                int j = i;
+                while (j < n && isAsciiLetterOrDigit(normalized.charAt(j))) {
+                    j++;
+                }
+                relax(cost, from, kind, i, j, cost[i] + 1, Kind.ASCII);
+            } else {
+                relax(cost, from, kind, i, i + 1, cost[i] + UNKNOWN_CHAR_COST, Kind.UNKNOWN);
+            }
+            for (int length = 1; length <= current.maxWordLength && i + length <= n; length++) {
+                String word = normalized.substring(i, i + length);
+                if (STOP_WORDS.contains(word)) {
+                    relax(cost, from, kind, i, i + length, cost[i] + 1, Kind.STOP);
+                } else if (current.words.contains(word)) {
+                    relax(cost, from, kind, i, i + length, cost[i] + 1, Kind.WORD);
+                }
+            }
+        }
+
+        // 回溯
+        List<int[]> segments = new ArrayList<>();
+        for (int end = n; end > 0; end = from[end]) {
+            segments.add(new int[]{from[end], end, kind[end].ordinal()});
+        }
+        Collections.reverse(segments);
+
+        List<String> tokens = new ArrayList<>();
+        int covered = 0;
+        int total = 0;
+        int unknownStart = -1;
+        for (int[] segment : segments) {
+            Kind k = Kind.values()[segment[2]];
+            int length = segment[1] - segment[0];
+            if (k != Kind.SEPARATOR) {
+                total += length;
+            }
+            if (k == Kind.UNKNOWN) {
+                if (unknownStart < 0) {
+                    unknownStart = segment[0];
+                }
+                continue;
+            }
+            if (unknownStart >= 0) {
+                addToken(tokens, text.substring(unknownStart, segment[0]));
+                unknownStart = -1;
+            }
+            if (k == Kind.WORD || k == Kind.ASCII) {
+                covered += length;
+                addToken(tokens, text.substring(segment[0], segment[1]));
+            } else if (k == Kind.STOP) {
+                covered += length;
+            }
+        }
+        if (unknownStart >= 0) {
+            addToken(tokens, text.substring(unknownStart));
+        }
+
+        double confidence = total == 0 ? 0.0 : (double) covered / total;
+        return new Segmentation(tokens, confidence, confidence >= minConfidence && !tokens.isEmpty());
+    }
+
+    /**
+     * 把 CKIP 斷出來的詞加進詞庫，之後同類的查詢就不必再問 CKIP
+     */
+    public void learn(List<String> tokens) {
+        if (tokens == null) {
+            return;
+        }
+        boolean added = false;
+        for (String token : tokens) {
+            if (learnedWords.size() >= maxLearnedWords) {
+                break;
+            }
+            if (token != null && isLearnable(token) && learnedWords.add(normalize(token))) {
+                added = true;
+            }
+        }
+        if (added) {
+            learnedChanged = true;
+        }
+    }
+
+    public int lexiconSize() {
+        return currentLexicon().words.size();
+    }
+
+    private static void addToken(List<String> tokens, String token) {
+        String trimmed = token.trim();
+        // 與 CKIP 端相同：單字不輸出
+        if (trimmed.length() >= 2) {
+            tokens.add(trimmed);
+        }
+    }
+
+    private static void relax(double[] cost, int[] from, Kind[] kind, int start, int end, double value, Kind k) {
+        if (value < cost[end]) {
+            cost[end] = value;
+            from[end] = start;
+            kind[end] = k;
+        }
+    }
+
+    private enum Kind { WORD, STOP, ASCII, UNKNOWN, SEPARATOR }
+
+    private static final class Lexicon {
+        final CandidateSet candidates;
+        final Set<String> words;
+        final int maxWordLength;
+
+        Lexicon(CandidateSet candidates, Set<String> words) {
+            this.candidates = candidates;
+            this.words = words;
+            int max = 1;
+            for (String word : words) {
+                max = Math.max(max, word.length());
+            }
+            this.maxWordLength = max;
+        }
+    }
+
+    private Lexicon currentLexicon() {
+        CandidateSet candidates = voyageReRanker.getCandidates();
+        Lexicon current = lexicon;
+        if (current == null || current.candidates != candidates || learnedChanged) {
+            learnedChanged = false;
+            current = new Lexicon(candidates, buildWords(candidates));
+            lexicon = current;
+        }
+        return current;
+    }
+
+    private Set<String> buildWords(CandidateSet candidates) {
+        Set<String> words = new HashSet<>(foodTerms);
+        for (String city : candidates.getKeywordLists().getOrDefault(CandidateSet.COUNTY_CITY, Collections.emptyList())) {
+            addWithoutSuffix(words, city, "市", "縣");
+        }
+        for (String name : candidates.getKeywordLists().getOrDefault(CandidateSet.NIGHT_MARKET_NAME, Collections.emptyList())) {
+            String normalized = normalize(name);
+            words.add(normalized);
+            // "饒河街觀光夜市" 也收 "饒河街"、"饒河街夜市"
+            for (String suffix : Arrays.asList("觀光夜市", "夜市", "商圈")) {
+                if (normalized.endsWith(suffix) && normalized.length() - suffix.length() >= 2) {
+                    String core = normalized.substring(0, normalized.length() - suffix.length());
+                    words.add(core);
+                    words.add(core + "夜市");
+                    break;
+                }
+            }
+        }
+        for (String district : candidates.getNightMarketStore().getDistricts()) {
+            addWithoutSuffix(words, district, "區", "鄉", "鎮", "市");
+        }
+        words.addAll(learnedWords);
+        words.removeAll(STOP_WORDS);
+        return Collections.unmodifiableSet(words);
+    }
+
+    private static void addWithoutSuffix(Set<String> words, String word, String... suffixes) {
+        String normalized = normalize(word);
+        words.add(normalized);
+        for (String suffix : suffixes) {
+            if (normalized.endsWith(suffix) && normalized.length() - suffix.length() >= 2) {
+                words.add(normalized.substring(0, normalized.length() - suffix.length()));
+                return;
+            }
+        }
+    }
+
+    private static boolean isLearnable(String token) {
+        if (token.length() < 2 || token.length() > MAX_LEARNED_WORD_LENGTH || STOP_WORDS.contains(token)) {
+            return false;
+        }
+        return token.chars().allMatch(ch -> Character.UnicodeScript.of(ch) == Character.UnicodeScript.HAN);
+    }
+
+    private static Set<String> loadFoodTerms() {
+        Set<String> terms = new HashSet<>();
+        try (InputStream in = ChineseSegmenter.class.getResourceAsStream(FOOD_TERMS_RESOURCE)) {
+            if (in == null) {
+                logger.warn("{} not found, segmenter uses gazetteer words only", FOOD_TERMS_RESOURCE);
+                return terms;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    terms.add(normalize(line));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to load {}", FOOD_TERMS_RESOURCE, e);
+        }
+        return terms;
+    }
+
+    /**
+     * 與 GazetteerIndex.normalize 相同的字元對應 (台 -> 臺、ASCII 轉小寫)，但不刪除空白，長度不變
+     */
+    private static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '台') {
+                c = '臺';
+            } else if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isPunctuation(char c) {
+        int type = Character.getType(c);
+        return type == Character.OTHER_PUNCTUATION || type == Character.START_PUNCTUATION
+                || type == Character.END_PUNCTUATION || type == Character.DASH_PUNCTUATION
+                || type == Character.CONNECTOR_PUNCTUATION || type == Character.INITIAL_QUOTE_PUNCTUATION
+                || type == Character.FINAL_QUOTE_PUNCTUATION || type == Character.MATH_SYMBOL;
+    }
+}
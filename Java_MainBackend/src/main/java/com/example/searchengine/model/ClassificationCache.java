@@ -0,0 +1,138 @@
+package com.example.searchengine.model;
+
+import com.example.searchengine.model.ClassificationModel.ClassificationResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * token -> ClassificationResult 的快取 (有筆數上限)。
+ *
+ * 分類結果只取決於縣市 / 夜市清單，所以每筆快取都屬於某個清單版本 (fingerprint)：
+ * 清單變動時只移除受影響的項目，其餘改屬新版本；存檔時也記下 fingerprint，載入時版本不同就不採用。
+ */
+public final class ClassificationCache {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Cache<String, ClassificationResult> cache;
+    private volatile String fingerprint;
+
+    public ClassificationCache(long maxEntries, String fingerprint) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        this.fingerprint = fingerprint;
+    }
+
+    public ClassificationResult get(String token) {
+        return cache.getIfPresent(token);
+    }
+
+    /**
+     * 只有在結果所依據的清單版本仍是目前版本時才放入
+     */
+    public void put(String token, ClassificationResult result, String resultFingerprint) {
+        if (resultFingerprint.equals(fingerprint)) {
+            cache.put(token, result);
+        }
+    }
+
+    /**
+     * 清單變動：版本不同時換成新版本並移除 stale 判定為受影響的項目 (token, 快取的結果)。
+     * 舊版本計算中的結果之後 put 時會因 fingerprint 不同而被丟棄。回傳移除筆數
+     */
+    public synchronized int onKeywordListsChanged(String newFingerprint,
+                                                  BiPredicate<String, ClassificationResult> stale) {
+        if (newFingerprint.equals(fingerprint)) {
+            return 0;
+        }
+        fingerprint = newFingerprint;
+        int removed = 0;
+        Iterator<Map.Entry<String, ClassificationResult>> it = cache.asMap().entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, ClassificationResult> entry = it.next();
+            if (stale.test(entry.getKey(), entry.getValue())) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 從檔案載入；檔案不存在、格式錯誤或清單版本不同時不載入。回傳載入筆數
+     */
+    public synchronized int load(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        Snapshot snapshot = OBJECT_MAPPER.readValue(file.toFile(), Snapshot.class);
+        if (!fingerprint.equals(snapshot.fingerprint) || snapshot.entries == null) {
+            return 0;
+        }
+        for (Map.Entry<String, SnapshotEntry> entry : snapshot.entries.entrySet()) {
+            SnapshotEntry value = entry.getValue();
+            if (value != null && value.category != null) {
+                cache.put(entry.getKey(), new ClassificationResult(value.category, value.matchedValue));
+            }
+        }
+        return snapshot.entries.size();
+    }
+
+    /**
+     * 寫入檔案 (先寫暫存檔再取代，避免寫到一半留下壞檔)。回傳寫入筆數
+     */
+    public synchronized int save(Path file) throws IOException {
+        Snapshot snapshot = new Snapshot();
+        snapshot.fingerprint = fingerprint;
+        snapshot.entries = new HashMap<>();
+        for (Map.Entry<String, ClassificationResult> entry : cache.asMap().entrySet()) {
+            SnapshotEntry value = new SnapshotEntry();
+            value.category = entry.getValue().getCategory();
+            value.matchedValue = entry.getValue().getMatchedValue();
+            snapshot.entries.put(entry.getKey(), value);
+        }
+
+        Path absolute = file.toAbsolutePath();
+        if (absolute.getParent() != null) {
+            Files.createDirectories(absolute.getParent());
+        }
+        Path tmp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        OBJECT_MAPPER.writeValue(tmp.toFile(), snapshot);
+        Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return snapshot.entries.size();
+    }
+
+    /**
+     * 存檔格式：{"fingerprint": "...", "entries": {token: {"category": ..., "matchedValue": ...}}}
+     */
+    static final class Snapshot {
+        public String fingerprint;
+        public Map<String, SnapshotEntry> entries;
+    }
+
+    static final class SnapshotEntry {
+        public String category;
+        public String matchedValue;
+    }
+}
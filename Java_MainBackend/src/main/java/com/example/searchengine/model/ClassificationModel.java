@@ -1,9 +1,24 @@
 package com.example.searchengine.model;
 
 import com.example.searchengine.model.VoyageReRanker.BestMatchResponse;
+import com.example.searchengine.service.SearchMetrics;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ClassificationModel 用於對單一 token 進行類別預測。
@@ -12,8 +27,15 @@ import java.util.Map;
  * 2. Night Market Name
  * 3. Food Name
  */
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 @Component
 public class ClassificationModel {
 
@@ -48,27 +70,156 @@ public class ClassificationModel {
         }
     }
 
+    private static final Logger logger = LoggerFactory.getLogger(ClassificationModel.class);
+
     private final VoyageReRanker voyageReRanker;
     private static final double THRESHOLD = 0.5;
 
+    private static final long DEFAULT_CACHE_ENTRIES = 10_000;
+
+    // 本地索引判定的門檻：至少幾個字、bigram 相似度多高才直接採用
+    private static final int MIN_FUZZY_LENGTH = 2;
+    private static final double FUZZY_ACCEPT = 0.8;
+
+    /**
+     * 目前的候選清單、版本 (fingerprint) 與對應的本地索引，一起替換
+     */
+    private static final class KeywordState {
+        private final CandidateSet candidates;
+        private final String fingerprint;
+        private final GazetteerIndex gazetteerIndex; // 縣市 / 夜市名稱的本地索引 (縣市優先)
+
+        KeywordState(CandidateSet candidates) {
+            this(candidates, GazetteerIndex.build(candidates.getKeywordLists()));
+        }
+
+        KeywordState(CandidateSet candidates, GazetteerIndex gazetteerIndex) {
+            this.candidates = candidates;
+            this.fingerprint = fingerprint(candidates.getKeywordLists());
+            this.gazetteerIndex = gazetteerIndex;
+        }
+    }
+
+    private volatile KeywordState keywordState;
+
+    // reranker 判定過的 token 快取 (本地索引判定的不必快取)；snapshotFile 為 null 時不存檔
+    private final ClassificationCache classificationCache;
+    private final Path snapshotFile;
+    private final SearchMetrics searchMetrics;
+
     /**
      * 預設建構子：初始化 VoyageReRanker
      */
     public ClassificationModel() {
-        this.voyageReRanker = new VoyageReRanker();
+        this(new VoyageReRanker());
     }
 
     /**
-     * 指定建構子：可傳入外部已建好的 VoyageReRanker 實例
+     * 指定建構子：可傳入外部已建好的 VoyageReRanker 實例 (快取不存檔)
      */
     public ClassificationModel(VoyageReRanker voyageReRanker) {
+        this(voyageReRanker, DEFAULT_CACHE_ENTRIES, "", SearchMetrics.NOOP);
+    }
+
+    /**
+     * Spring 使用的建構子：注入共用的 VoyageReRanker bean；快取於關閉時存檔、啟動時載入
+     */
+    @Autowired
+    public ClassificationModel(VoyageReRanker voyageReRanker,
+                               @Value("${classification.cache.max-entries:10000}") long cacheMaxEntries,
+                               @Value("${classification.cache.snapshot-file:}") String snapshotFile,
+                               SearchMetrics searchMetrics) {
         this.voyageReRanker = voyageReRanker;
+        this.searchMetrics = searchMetrics;
+        this.keywordState = new KeywordState(voyageReRanker.getCandidates());
+        this.classificationCache = new ClassificationCache(cacheMaxEntries, keywordState.fingerprint);
+        this.snapshotFile = snapshotFile.isEmpty() ? null : Paths.get(snapshotFile);
+    }
+
+    /**
+     * 縣市 / 夜市清單變動後呼叫 (由 GazetteerWatcher 的單一執行緒呼叫)：
+     * 只把新增 / 移除的名稱套用到本地索引，分類快取也只移除受這些名稱影響的 token
+     */
+    public void refreshKeywordLists() {
+        KeywordState current = keywordState;
+        CandidateSet candidates = voyageReRanker.getCandidates();
+        if (candidates == current.candidates) {
+            return;
+        }
+        GazetteerDelta delta = GazetteerDelta.between(current.candidates.getKeywordLists(), candidates.getKeywordLists());
+        if (delta.isEmpty()) {
+            // 只有 CSV 其它欄位、列的順序或重複的名稱變動：分類不受影響 (fingerprint 與順序、重複無關，通常不變)
+            KeywordState newState = new KeywordState(candidates, current.gazetteerIndex);
+            keywordState = newState;
+            classificationCache.onKeywordListsChanged(newState.fingerprint, (token, result) -> false);
+            return;
+        }
+
+        KeywordState newState = new KeywordState(candidates, current.gazetteerIndex.withChanges(delta));
+        keywordState = newState;
+        int removed = classificationCache.onKeywordListsChanged(newState.fingerprint,
+                (token, result) -> delta.affects(token, result.getMatchedValue()));
+        logger.info("Keyword lists changed ({}), removed {} cached classifications", delta, removed);
+    }
+
+    public ClassificationCache getClassificationCache() {
+        return classificationCache;
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            int loaded = classificationCache.load(snapshotFile);
+            logger.info("Loaded {} cached classifications from {}", loaded, snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not load classification cache from {}", snapshotFile, e);
+        }
+    }
+
+    @PreDestroy
+    public void saveSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            int saved = classificationCache.save(snapshotFile);
+            logger.info("Saved {} cached classifications to {}", saved, snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not save classification cache to {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * 清單內容的 SHA-256 (前 16 個 hex 字元)，包含分類門檻，門檻改了快取也會失效。
+     * 各類別的名稱排序、去重後才計算：reranker 的判定只取決於名稱集合，CSV 列的順序或重複的列不影響
+     */
+    private static String fingerprint(Map<String, List<String>> keywordLists) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(("threshold=" + THRESHOLD + "\n").getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, List<String>> entry : new TreeMap<>(keywordLists).entrySet()) {
+                digest.update((entry.getKey() + "\n").getBytes(StandardCharsets.UTF_8));
+                for (String name : new TreeSet<>(entry.getValue())) {
+                    digest.update((name + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
      * 預測 token 所屬的類別。
      *
-     * 1. 從 VoyageReRanker 取得「縣市」清單與「夜市」清單，合併為一個大清單
+     * 1. 取得 VoyageReRanker 預先合併好的「縣市」+「夜市」候選清單
      * 2. 跟 token 做相似度比較，取出最佳匹配值與分數
      * 3. 若分數 < 0.9 則分類為 "Food Name"
      * 4. 若分數 >= 0.9，判斷其落在哪個清單中
@@ -77,18 +228,129 @@ public class ClassificationModel {
      * @return ClassificationResult (包含 category 與 matchedValue)
      */
     public ClassificationResult predictCategory(String token) {
-        // 1. 取出 "County/City" 和 "Night Market Name" 兩個清單
-        Map<String, List<String>> keywordLists = voyageReRanker.getKeywordLists();
-        List<String> cityList = keywordLists.getOrDefault("County/City", new ArrayList<>());
-        List<String> nightMarketList = keywordLists.getOrDefault("Night Market Name", new ArrayList<>());
-
-        // 2. 合併成一個大清單
-        List<String> combinedList = new ArrayList<>();
-        combinedList.addAll(cityList);
-        combinedList.addAll(nightMarketList);
-
-        // 3. 呼叫 VoyageReRanker，取得最佳匹配 (包含文字與分數)
-        BestMatchResponse bestMatchResponse = voyageReRanker.getBestMatchWithScore(token, combinedList);
+        return predictCategories(Collections.singletonList(token)).get(0);
+    }
+
+    /**
+     * 批次預測：先用本地索引判定，只有判定不了的 token 才一次送給 reranker (重複的 token 只送一次)。
+     *
+     * @param tokens 欲分類的文字
+     * @return 與 tokens 同順序的 ClassificationResult
+     */
+    public List<ClassificationResult> predictCategories(List<String> tokens) {
+        // 1. 「縣市」+「夜市」候選清單已預先合併好 (不可變，所有查詢共用)
+        KeywordState state = keywordState;
+
+        // 2. 本地索引能確定的直接決定，其次查快取
+        Map<String, ClassificationResult> byToken = new HashMap<>();
+        List<String> ambiguousTokens = resolveLocally(state, tokens, byToken);
+
+        // 3. 其餘呼叫 VoyageReRanker，一次取得所有 token 的最佳匹配 (包含文字與分數)
+        if (!ambiguousTokens.isEmpty()) {
+            byToken.putAll(classifyWithReranker(state, ambiguousTokens));
+        }
+        return inTokenOrder(tokens, byToken);
+    }
+
+    /**
+     * 非同步版本：本地索引 / 快取能判定的立即決定；其餘 token 一次送給 reranker，在 executor 上執行。
+     * reranker 超過 timeoutMs 或失敗時，這些 token 一律當作 Food Name (晚到的結果仍會寫入快取)。
+     *
+     * 全部都能在本地判定時回傳已完成的 future。
+     */
+    public CompletableFuture<List<ClassificationResult>> predictCategoriesAsync(List<String> tokens,
+                                                                              Executor executor,
+                                                                              long timeoutMs) {
+        KeywordState state = keywordState;
+        Map<String, ClassificationResult> byToken = new HashMap<>();
+        List<String> ambiguousTokens = resolveLocally(state, tokens, byToken);
+        if (ambiguousTokens.isEmpty()) {
+            return CompletableFuture.completedFuture(inTokenOrder(tokens, byToken));
+        }
+
+        long startNanos = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> classifyWithReranker(state, ambiguousTokens), executor)
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((r, e) -> searchMetrics.recordExtraction("classify", e, startNanos))
+                .exceptionally(e -> {
+                    logger.warn("Reranker classification failed ({}), treating {} as Food Name", e.toString(), ambiguousTokens);
+                    return null;
+                })
+                .thenApply(fromReranker -> {
+                    Map<String, ClassificationResult> merged = new HashMap<>(byToken);
+                    for (String token : ambiguousTokens) {
+                        ClassificationResult result = fromReranker == null ? null : fromReranker.get(token);
+                        merged.put(token, result != null ? result : new ClassificationResult("Food Name", null));
+                    }
+                    return inTokenOrder(tokens, merged);
+                });
+    }
+
+    /**
+     * 本地索引 / 快取判定的放進 byToken，回傳判定不了的 token (不重複)
+     */
+    private List<String> resolveLocally(KeywordState state, List<String> tokens, Map<String, ClassificationResult> byToken) {
+        List<String> ambiguousTokens = new ArrayList<>();
+        for (String token : new LinkedHashSet<>(tokens)) {
+            ClassificationResult known = classifyLocally(state.gazetteerIndex, token);
+            if (known == null) {
+                known = classificationCache.get(token);
+            }
+            if (known != null) {
+                byToken.put(token, known);
+            } else {
+                ambiguousTokens.add(token);
+            }
+        }
+        return ambiguousTokens;
+    }
+
+    private Map<String, ClassificationResult> classifyWithReranker(KeywordState state, List<String> ambiguousTokens) {
+        Map<String, ClassificationResult> byToken = new HashMap<>();
+        List<BestMatchResponse> matches = voyageReRanker.getBestMatchesWithScore(ambiguousTokens, state.candidates);
+        for (int i = 0; i < ambiguousTokens.size(); i++) {
+            String token = ambiguousTokens.get(i);
+            ClassificationResult result = classify(matches.get(i), state.candidates);
+            byToken.put(token, result);
+            // API 呼叫失敗 (null) 的結果不快取
+            if (matches.get(i) != null) {
+                classificationCache.put(token, result, state.fingerprint);
+            }
+        }
+        return byToken;
+    }
+
+    private static List<ClassificationResult> inTokenOrder(List<String> tokens, Map<String, ClassificationResult> byToken) {
+        List<ClassificationResult> results = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            results.add(byToken.get(token));
+        }
+        return results;
+    }
+
+    /**
+     * 本地判定：完全相同 / 高 bigram 相似度 -> 縣市或夜市；其它回傳 null 交給 reranker。
+     *
+     * 只採用 reranker 一定會得到相同結論的情況：名稱的開頭 (例如 "士林") 或與名稱毫無共同字的 token
+     * 仍交給 reranker，否則分類 (以及關鍵字權重) 會與原本不同
+     */
+    private ClassificationResult classifyLocally(GazetteerIndex gazetteerIndex, String token) {
+        GazetteerIndex.Match match = gazetteerIndex.exact(token);
+        if (match != null) {
+            return new ClassificationResult(match.getCategory(), match.getValue());
+        }
+
+        if (GazetteerIndex.normalize(token).length() < MIN_FUZZY_LENGTH) {
+            return null; // 單一字元交給 reranker
+        }
+        GazetteerIndex.Match fuzzy = gazetteerIndex.bestFuzzy(token);
+        if (fuzzy != null && fuzzy.getScore() >= FUZZY_ACCEPT) {
+            return new ClassificationResult(fuzzy.getCategory(), fuzzy.getValue());
+        }
+        return null;
+    }
+
+    private ClassificationResult classify(BestMatchResponse bestMatchResponse, CandidateSet candidates) {
         if (bestMatchResponse == null) {
             // API 呼叫失敗或無結果，直接歸類為 Food Name
             return new ClassificationResult("Food Name", null);
@@ -102,11 +364,10 @@ public class ClassificationModel {
             return new ClassificationResult("Food Name", null);
         }
 
-        // 若分數 >= 0.9，判斷 bestDoc 屬於縣市或夜市
-        if (cityList.contains(bestDoc)) {
-            return new ClassificationResult("County/City", bestDoc);
-        } else if (nightMarketList.contains(bestDoc)) {
-            return new ClassificationResult("Night Market Name", bestDoc);
+        // 若分數 >= 0.9，判斷 bestDoc 屬於縣市或夜市 (hash 索引)
+        String category = candidates.categoryOf(bestDoc);
+        if (CandidateSet.COUNTY_CITY.equals(category) || CandidateSet.NIGHT_MARKET_NAME.equals(category)) {
+            return new ClassificationResult(category, bestDoc);
         } else {
             // 若都不屬於，預設為 Food Name
             return new ClassificationResult("Food Name", null);
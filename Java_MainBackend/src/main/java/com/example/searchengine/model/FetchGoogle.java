@@ -7,18 +7,87 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class FetchGoogle {
     // Related Keywords Get
 
+    private static final Logger logger = LoggerFactory.getLogger(FetchGoogle.class);
+
     private static final String API_URL = "http://localhost:5000/fetch";
-    private final OkHttpClient client = new OkHttpClient();
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 32;
+
+    private final OkHttpClient client;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    public FetchGoogle() {
+        this(DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * @param maxRequestsPerHost 同時送出的非同步請求上限。OkHttp 預設每個 host 只有 5 個，
+     *                           而所有請求都打同一個 localhost:5000，並行搜尋一多就會在 dispatcher 排隊到逾時
+     */
+    @Autowired
+    public FetchGoogle(@Value("${related.max-requests-per-host:32}") int maxRequestsPerHost) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), maxRequestsPerHost));
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .build();
+    }
+
     public List<String> getrelate(String input) throws IOException {
+        // 執行請求並處理響應
+        try (Response response = client.newCall(buildRequest(input)).execute()) {
+            return parseResponse(response);
+        }
+    }
+
+    /**
+     * 非同步版本：不佔用呼叫端的執行緒；future 被取消或逾時 (例如 orTimeout) 時一併中止 HTTP 請求
+     */
+    public CompletableFuture<List<String>> getrelateAsync(String input) {
+        Call call;
+        try {
+            call = client.newCall(buildRequest(input));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<List<String>> future = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call c, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call c, Response response) {
+                try (Response r = response) {
+                    future.complete(parseResponse(r));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.whenComplete((keywords, e) -> {
+            if (e != null) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    private Request buildRequest(String input) throws IOException {
         // 使用 HashMap 初始化請求參數
         Map<String, String> requestBody = new HashMap<>();
         requestBody.put("text", input);
@@ -27,21 +96,20 @@ public class FetchGoogle {
         String jsonRequestBody = objectMapper.writeValueAsString(requestBody);
 
         // 創建請求
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(API_URL)
                 .post(RequestBody.create(jsonRequestBody, MediaType.parse("application/json")))
                 .build();
+    }
 
-        // 執行請求並處理響應
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
-            }
-
-            // 解析響應 JSON
-            Map<String, Object> responseMap = objectMapper.readValue(response.body().string(), Map.class);
-            System.out.println("responseMap: " + responseMap);
-            return (List<String>) responseMap.get("keywords");
+    private List<String> parseResponse(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("Unexpected code " + response);
         }
+
+        // 解析響應 JSON
+        Map<String, Object> responseMap = objectMapper.readValue(response.body().string(), Map.class);
+        logger.debug("responseMap: {}", responseMap);
+        return (List<String>) responseMap.get("keywords");
     }
 }
@@ -0,0 +1,104 @@
+package com.example.searchengine.model;
+
+import java.util.*;
+
+/**
+ * 兩個版本的 類別 -> 名稱清單 之間的差異 (CSV 重新載入時使用)，用來只更新受影響的索引與分類快取。
+ *
+ * 同一類別內重複的名稱視為一個；名稱換了類別時同時出現在 removed (舊類別) 與 added (新類別)。
+ */
+public final class GazetteerDelta {
+
+    private final Map<String, List<String>> added;
+    private final Map<String, List<String>> removed;
+    private final Set<String> removedNames = new HashSet<>();
+    private final Set<Integer> addedChars = new HashSet<>();
+
+    private GazetteerDelta(Map<String, List<String>> added, Map<String, List<String>> removed) {
+        this.added = Collections.unmodifiableMap(added);
+        this.removed = Collections.unmodifiableMap(removed);
+        for (List<String> names : removed.values()) {
+            removedNames.addAll(names);
+        }
+        for (List<String> names : added.values()) {
+            for (String name : names) {
+                GazetteerIndex.normalize(name).codePoints().forEach(addedChars::add);
+            }
+        }
+    }
+
+    /**
+     * 由 before 變成 after 的差異 (依類別、清單順序)
+     */
+    public static GazetteerDelta between(Map<String, List<String>> before, Map<String, List<String>> after) {
+        Map<String, List<String>> added = new LinkedHashMap<>();
+        Map<String, List<String>> removed = new LinkedHashMap<>();
+        Set<String> categories = new LinkedHashSet<>(after.keySet());
+        categories.addAll(before.keySet());
+        for (String category : categories) {
+            Set<String> oldNames = new LinkedHashSet<>(before.getOrDefault(category, Collections.emptyList()));
+            Set<String> newNames = new LinkedHashSet<>(after.getOrDefault(category, Collections.emptyList()));
+            List<String> addedNames = new ArrayList<>();
+            for (String name : newNames) {
+                if (!oldNames.contains(name)) {
+                    addedNames.add(name);
+                }
+            }
+            List<String> removedNames = new ArrayList<>();
+            for (String name : oldNames) {
+                if (!newNames.contains(name)) {
+                    removedNames.add(name);
+                }
+            }
+            if (!addedNames.isEmpty()) {
+                added.put(category, List.copyOf(addedNames));
+            }
+            if (!removedNames.isEmpty()) {
+                removed.put(category, List.copyOf(removedNames));
+            }
+        }
+        return new GazetteerDelta(added, removed);
+    }
+
+    /**
+     * 類別 -> 新增的名稱
+     */
+    public Map<String, List<String>> getAdded() {
+        return added;
+    }
+
+    /**
+     * 類別 -> 移除的名稱
+     */
+    public Map<String, List<String>> getRemoved() {
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * reranker 對 token 的判定 (matchedValue 為 null 表示 Food Name) 在這次變動後是否可能不同：
+     *
+     * - 判定的名稱被移除 (或換了類別)
+     * - token 與新增的名稱有共同字 (正規化後)：新名稱可能比原本的結果分數更高
+     *
+     * 移除其它名稱不影響 (reranker 對每個 document 的分數各自獨立，最佳的仍是最佳)；
+     * 與新名稱沒有任何共同字的 token 視為不受影響
+     */
+    public boolean affects(String token, String matchedValue) {
+        if (matchedValue != null && removedNames.contains(matchedValue)) {
+            return true;
+        }
+        if (addedChars.isEmpty()) {
+            return false;
+        }
+        return GazetteerIndex.normalize(token).codePoints().anyMatch(addedChars::contains);
+    }
+
+    @Override
+    public String toString() {
+        return "added=" + added + ", removed=" + removed;
+    }
+}
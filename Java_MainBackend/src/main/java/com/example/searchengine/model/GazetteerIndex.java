@@ -0,0 +1,283 @@
+package com.example.searchengine.model;
+
+import java.util.*;
+
+/**
+ * 縣市 / 夜市名稱的本地索引 (由 VoyageReRanker.keywordLists 建立，建好後不可變)。
+ *
+ * - exact：完全相同 (臺/台、大小寫、空白正規化後)
+ * - fuzzy：字元 bigram 的 Dice 相似度，透過 bigram 反向索引只比對有共同 bigram 的名稱
+ *
+ * 類別依建立時 Map 的順序決定優先權 (同名時先出現的類別優先)。
+ * CSV 重新載入時以 withChanges 套用差異，不必整個重建。
+ */
+public final class GazetteerIndex {
+
+    public enum MatchType { EXACT, FUZZY }
+
+    /**
+     * 本地比對結果
+     */
+    public static final class Match {
+        private final String category;
+        private final String value;
+        private final double score;
+        private final MatchType type;
+
+        Match(String category, String value, double score, MatchType type) {
+            this.category = category;
+            this.value = value;
+            this.score = score;
+            this.type = type;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public MatchType getType() {
+            return type;
+        }
+    }
+
+    // 類別 -> 優先順序 (建立時 Map 的順序，之後才出現的類別排在後面)
+    private final Map<String, Integer> categoryRanks;
+    // 正規化後的名稱 -> 同名的所有名稱 (依類別優先順序、加入順序)，第一個為比對結果
+    private final Map<String, List<Match>> exactMatches;
+
+    // bigram 反向索引 (每個正規化名稱一個 id；移除的名稱其 id 不再使用)
+    private final Map<String, Integer> idByKey;
+    private final List<String> keys;
+    private final List<Set<String>> keyBigrams;
+    private final Map<String, int[]> postings;
+
+    private GazetteerIndex(Editor editor) {
+        this.categoryRanks = editor.categoryRanks;
+        this.exactMatches = editor.exactMatches;
+        this.idByKey = editor.idByKey;
+        this.keys = editor.keys;
+        this.keyBigrams = editor.keyBigrams;
+        for (Map.Entry<String, List<Integer>> entry : editor.changedPostings.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                editor.postings.remove(entry.getKey());
+            } else {
+                editor.postings.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        this.postings = editor.postings;
+    }
+
+    /**
+     * 由 類別 -> 名稱清單 建立索引
+     */
+    public static GazetteerIndex build(Map<String, List<String>> keywordLists) {
+        Editor editor = new Editor(null);
+        for (Map.Entry<String, List<String>> entry : keywordLists.entrySet()) {
+            for (String name : entry.getValue()) {
+                editor.add(entry.getKey(), name);
+            }
+        }
+        return new GazetteerIndex(editor);
+    }
+
+    /**
+     * 套用清單變動，回傳新的索引 (這個索引不變，查詢中的請求可繼續使用)。
+     * 只重算變動名稱的 bigram 與 posting；新加入的名稱在 fuzzy 同分時排在既有名稱之後
+     */
+    public GazetteerIndex withChanges(GazetteerDelta delta) {
+        Editor editor = new Editor(this);
+        for (Map.Entry<String, List<String>> entry : delta.getRemoved().entrySet()) {
+            for (String name : entry.getValue()) {
+                editor.remove(entry.getKey(), name);
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : delta.getAdded().entrySet()) {
+            for (String name : entry.getValue()) {
+                editor.add(entry.getKey(), name);
+            }
+        }
+        return new GazetteerIndex(editor);
+    }
+
+    /**
+     * 完全比對；找不到回傳 null
+     */
+    public Match exact(String token) {
+        List<Match> matches = exactMatches.get(normalize(token));
+        return matches == null ? null : matches.get(0);
+    }
+
+    /**
+     * 與 token 的 bigram 相似度最高的名稱；沒有任何共同 bigram 時回傳 null
+     */
+    public Match bestFuzzy(String token) {
+        Set<String> grams = bigrams(normalize(token));
+        if (grams.isEmpty()) {
+            return null;
+        }
+
+        // 只計算有共同 bigram 的名稱
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            int[] ids = postings.get(gram);
+            if (ids != null) {
+                for (int id : ids) {
+                    shared.merge(id, 1, Integer::sum);
+                }
+            }
+        }
+
+        int bestId = -1;
+        double bestScore = 0;
+        for (Map.Entry<Integer, Integer> entry : shared.entrySet()) {
+            int id = entry.getKey();
+            double score = 2.0 * entry.getValue() / (grams.size() + keyBigrams.get(id).size());
+            // 同分時取先建立的 (優先類別、CSV 順序)
+            if (score > bestScore || (score == bestScore && id < bestId)) {
+                bestScore = score;
+                bestId = id;
+            }
+        }
+        if (bestId < 0) {
+            return null;
+        }
+        Match best = exactMatches.get(keys.get(bestId)).get(0);
+        return new Match(best.getCategory(), best.getValue(), bestScore, MatchType.FUZZY);
+    }
+
+    /**
+     * 索引中的名稱數 (正規化後相同的只算一個)
+     */
+    public int size() {
+        return exactMatches.size();
+    }
+
+    /**
+     * 正規化：去空白、ASCII 小寫、台 -> 臺
+     */
+    public static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (c == '台') {
+                c = '臺';
+            } else if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 建立 / 修改索引用的可變副本：複製的是 Map 與 List 本身，bigram 集合、posting 陣列與 Match 清單
+     * 沿用原本的 (不可修改)，只有變動到的才換成新的
+     */
+    private static final class Editor {
+        private final Map<String, Integer> categoryRanks;
+        private final Map<String, List<Match>> exactMatches;
+        private final Map<String, Integer> idByKey;
+        private final List<String> keys;
+        private final List<Set<String>> keyBigrams;
+        private final Map<String, int[]> postings;
+        private final Map<String, List<Integer>> changedPostings = new HashMap<>();
+
+        Editor(GazetteerIndex base) {
+            categoryRanks = base == null ? new HashMap<>() : new HashMap<>(base.categoryRanks);
+            exactMatches = base == null ? new HashMap<>() : new HashMap<>(base.exactMatches);
+            idByKey = base == null ? new HashMap<>() : new HashMap<>(base.idByKey);
+            keys = base == null ? new ArrayList<>() : new ArrayList<>(base.keys);
+            keyBigrams = base == null ? new ArrayList<>() : new ArrayList<>(base.keyBigrams);
+            postings = base == null ? new HashMap<>() : new HashMap<>(base.postings);
+        }
+
+        void add(String category, String name) {
+            String key = normalize(name);
+            if (key.isEmpty()) {
+                return;
+            }
+            int rank = categoryRanks.computeIfAbsent(category, c -> categoryRanks.size());
+            Match match = new Match(category, name, 1.0, MatchType.EXACT);
+
+            List<Match> existing = exactMatches.get(key);
+            if (existing != null) {
+                // 同名：依類別優先順序插入 (同類別的排在後面)
+                List<Match> matches = new ArrayList<>(existing);
+                int i = 0;
+                while (i < matches.size() && categoryRanks.get(matches.get(i).getCategory()) <= rank) {
+                    i++;
+                }
+                matches.add(i, match);
+                exactMatches.put(key, List.copyOf(matches));
+                return;
+            }
+            exactMatches.put(key, List.of(match));
+
+            int id = keys.size();
+            Set<String> grams = bigrams(key);
+            idByKey.put(key, id);
+            keys.add(key);
+            keyBigrams.add(grams);
+            for (String gram : grams) {
+                posting(gram).add(id);
+            }
+        }
+
+        void remove(String category, String name) {
+            String key = normalize(name);
+            List<Match> existing = exactMatches.get(key);
+            if (existing == null) {
+                return;
+            }
+            List<Match> matches = new ArrayList<>(existing);
+            matches.removeIf(m -> m.getCategory().equals(category) && m.getValue().equals(name));
+            if (!matches.isEmpty()) {
+                exactMatches.put(key, List.copyOf(matches));
+                return;
+            }
+            exactMatches.remove(key);
+
+            Integer id = idByKey.remove(key);
+            for (String gram : keyBigrams.get(id)) {
+                posting(gram).remove(id);
+            }
+            keys.set(id, null);
+            keyBigrams.set(id, Collections.emptySet());
+        }
+
+        private List<Integer> posting(String gram) {
+            return changedPostings.computeIfAbsent(gram, g -> {
+                List<Integer> ids = new ArrayList<>();
+                int[] current = postings.get(g);
+                if (current != null) {
+                    for (int id : current) {
+                        ids.add(id);
+                    }
+                }
+                return ids;
+            });
+        }
+    }
+
+    private static Set<String> bigrams(String key) {
+        Set<String> grams = new HashSet<>();
+        if (key.length() == 1) {
+            grams.add(key);
+        }
+        for (int i = 0; i + 1 < key.length(); i++) {
+            grams.add(key.substring(i, i + 2));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,513 @@
+package com.example.searchengine.model;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 串流式的 HTML 文字 / 外連擷取 (不建 DOM)，結果與 ProcessedPage.fromHtml 相同格式：
+ *
+ * - 文字可以分段餵入 (feed)，不必先把整份 HTML 讀成字串
+ * - 略過 head (含 title)、script / style 的內容與註解；
+ *   沒有 </head> 或 <body> 時 (HTML5 可省略)，遇到第一個只能出現在 body 的標籤或文字就視為 head 結束
+ * - 區塊元素之間補空白，空白 (含 U+00A0) 壓縮成一個，零寬空白 / 軟連字號去掉，開頭的 BOM 去掉
+ *   (與 Jsoup 的 body().text() 相同，見 HtmlStreamParserTest)
+ * - a[href] 轉成絕對網址 (支援 base href)，只保留 http / https
+ * - 文字達到 maxTextChars 後 isFull() 為 true，呼叫端可以提早停止讀取
+ */
+public final class HtmlStreamParser {
+
+    private static final Set<String> RAW_TEXT_TAGS = Set.of("script", "style");
+
+    // 可以出現在 head 裡的標籤；其它標籤表示 head 已結束
+    private static final Set<String> HEAD_TAGS = Set.of(
+            "head", "html", "base", "link", "meta", "noscript", "script", "style", "template", "title", "basefont", "bgsound");
+
+    private static final char BOM = '\uFEFF';
+    private static final char NBSP = '\u00A0';
+    private static final char ZERO_WIDTH_SPACE = '\u200B';
+    private static final char SOFT_HYPHEN = '\u00AD';
+
+    // Jsoup 的 Tag.blockTags 加上 br (Jsoup 的 text() 在這些元素前面補空白)
+    private static final Set<String> BLOCK_TAGS = Set.of(
+            "html", "head", "body", "frameset", "script", "noscript", "style", "meta", "link", "title", "frame",
+            "noframes", "section", "nav", "aside", "hgroup", "header", "footer", "p", "h1", "h2", "h3", "h4", "h5",
+            "h6", "ul", "ol", "pre", "div", "blockquote", "hr", "address", "figure", "figcaption", "form",
+            "fieldset", "ins", "del", "dl", "dt", "dd", "li", "table", "caption", "thead", "tfoot", "tbody",
+            "colgroup", "col", "tr", "th", "td", "video", "audio", "canvas", "details", "menu", "plaintext",
+            "template", "article", "main", "svg", "math", "center", "br");
+
+    // 常見的 named entity；其餘原樣保留 (數字型 &#...; 全部支援)
+    private static final Map<String, Character> NAMED_ENTITIES = Map.ofEntries(
+            Map.entry("amp", '&'), Map.entry("lt", '<'), Map.entry("gt", '>'), Map.entry("quot", '"'),
+            Map.entry("apos", '\''), Map.entry("nbsp", ' '), Map.entry("middot", '·'), Map.entry("hellip", '…'),
+            Map.entry("ndash", '–'), Map.entry("mdash", '—'), Map.entry("lsaquo", '‹'), Map.entry("rsaquo", '›'),
+            Map.entry("laquo", '«'), Map.entry("raquo", '»'), Map.entry("copy", '©'), Map.entry("reg", '®'),
+            Map.entry("trade", '™'), Map.entry("bull", '•'), Map.entry("times", '×'), Map.entry("yen", '¥'),
+            Map.entry("lsquo", '‘'), Map.entry("rsquo", '’'), Map.entry("ldquo", '“'), Map.entry("rdquo", '”'));
+
+    // 標籤內容 (屬性) 最多保留幾個字元；超過的部分 (例如 data: URI) 只掃描不保存
+    private static final int MAX_TAG_CHARS = 4096;
+    private static final int MAX_ENTITY_CHARS = 10;
+
+    private enum State { TEXT, TAG, COMMENT, RAW_TEXT, ENTITY }
+
+    private final int maxTextChars;
+    private URI base;
+
+    private final StringBuilder text = new StringBuilder();
+    private final List<ProcessedPage.Link> links = new ArrayList<>();
+
+    private State state = State.TEXT;
+    private final StringBuilder tag = new StringBuilder();
+    private char quote;              // TAG 狀態中目前所在的引號 (0 = 不在引號內)
+    private boolean tagTruncated;
+    private final StringBuilder entity = new StringBuilder();
+    private String rawTextTag;       // RAW_TEXT 狀態要找的結束標籤名稱
+    private int rawMatch;            // 已比對到 "</tag" 的第幾個字元 (比對完後 +1 表示等待 '>')
+    private int commentDashes;       // COMMENT 狀態連續 '-' 的數量
+
+    private boolean inHead = true;   // 還沒進入 body (沒有 <head> 標籤的頁面也從這裡開始)
+    private boolean pendingSpace;
+    private boolean blockClosed;     // 剛結束一個區塊元素：接著是文字才補空白 (接著是標籤則不補，與 Jsoup 相同)
+    private boolean started;         // 已收到第一個字元 (用來去掉開頭的 BOM)
+
+    private String anchorHref;       // 目前所在 <a> 的網址 (null = 不在 <a> 內)
+    private final StringBuilder anchorText = new StringBuilder();
+
+    /**
+     * @param baseUrl      頁面網址，用來把相對連結轉成絕對網址
+     * @param maxTextChars 最多保留幾個文字 (<= 0 表示不限制)
+     */
+    public HtmlStreamParser(String baseUrl, int maxTextChars) {
+        this.maxTextChars = maxTextChars;
+        try {
+            this.base = baseUrl == null ? null : URI.create(baseUrl);
+        } catch (IllegalArgumentException e) {
+            this.base = null;
+        }
+    }
+
+    /**
+     * 一次解析完整的 HTML 字串
+     */
+    public static ProcessedPage parse(String html, String baseUrl) {
+        if (html == null || html.isEmpty()) {
+            return ProcessedPage.EMPTY;
+        }
+        HtmlStreamParser parser = new HtmlStreamParser(baseUrl, 0);
+        parser.feed(html);
+        return parser.finish();
+    }
+
+    /**
+     * 文字已達上限 (之後餵入的內容都會被忽略)
+     */
+    public boolean isFull() {
+        return maxTextChars > 0 && text.length() >= maxTextChars;
+    }
+
+    public void feed(CharSequence chunk) {
+        int i = 0;
+        int n = chunk.length();
+        if (!started && n > 0) {
+            started = true;
+            if (chunk.charAt(0) == BOM) {
+                i = 1;
+            }
+        }
+        for (; i < n && !isFull(); i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * 結束解析，回傳結果 (之後不要再 feed)
+     */
+    public ProcessedPage finish() {
+        if (state == State.ENTITY) {
+            appendText('&');
+            appendTextChars(entity);
+        }
+        closeAnchor();
+        String result = text.length() > maxTextChars && maxTextChars > 0
+                ? text.substring(0, maxTextChars) : text.toString();
+        result = result.trim();
+        if (result.isEmpty() && links.isEmpty()) {
+            return ProcessedPage.EMPTY;
+        }
+        return new ProcessedPage(result, Collections.unmodifiableList(new ArrayList<>(links)));
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case TEXT:
+                if (c == '<') {
+                    state = State.TAG;
+                    tag.setLength(0);
+                    quote = 0;
+                    tagTruncated = false;
+                } else if (c == '&') {
+                    state = State.ENTITY;
+                    entity.setLength(0);
+                } else {
+                    appendText(c);
+                }
+                break;
+            case ENTITY:
+                if (c == ';') {
+                    state = State.TEXT;
+                    appendEntity();
+                } else if ((Character.isLetterOrDigit(c) || c == '#') && entity.length() < MAX_ENTITY_CHARS) {
+                    entity.append(c);
+                } else {
+                    // 不是 entity，原樣輸出後重新處理這個字元
+                    state = State.TEXT;
+                    appendText('&');
+                    appendTextChars(entity);
+                    accept(c);
+                }
+                break;
+            case TAG:
+                acceptTagChar(c);
+                break;
+            case COMMENT:
+                if (c == '>' && commentDashes >= 2) {
+                    state = State.TEXT;
+                }
+                commentDashes = c == '-' ? commentDashes + 1 : 0;
+                break;
+            case RAW_TEXT:
+                acceptRawTextChar(c);
+                break;
+        }
+    }
+
+    private void acceptTagChar(char c) {
+        if (tag.length() == 0 && !Character.isLetter(c) && c != '/' && c != '!' && c != '?') {
+            // "<" 後面不是標籤開頭，例如 "a < b"、"<3"：當作文字
+            state = State.TEXT;
+            appendText('<');
+            accept(c);
+            return;
+        }
+        if (quote != 0) {
+            if (c == quote) {
+                quote = 0;
+            }
+        } else if (c == '"' || c == '\'') {
+            // 只有在屬性值開頭 (= 之後) 才當作引號
+            if (lastNonSpace(tag) == '=') {
+                quote = c;
+            }
+        } else if (c == '>') {
+            state = State.TEXT;
+            onTag(tag);
+            return;
+        }
+
+        if (tag.length() < MAX_TAG_CHARS) {
+            tag.append(c);
+        } else {
+            tagTruncated = true;
+        }
+        if (tag.length() == 3 && tag.charAt(0) == '!' && tag.charAt(1) == '-' && tag.charAt(2) == '-') {
+            state = State.COMMENT;
+            commentDashes = 0;
+        }
+    }
+
+    private void acceptRawTextChar(char c) {
+        // 找 "</" + rawTextTag (不分大小寫)，後面接空白、'/' 或 '>'
+        int target = 2 + rawTextTag.length();
+        if (rawMatch < target) {
+            char expected = rawMatch == 0 ? '<' : rawMatch == 1 ? '/' : rawTextTag.charAt(rawMatch - 2);
+            if (Character.toLowerCase(c) == expected) {
+                rawMatch++;
+            } else {
+                rawMatch = c == '<' ? 1 : 0;
+            }
+        } else if (rawMatch == target && !(c == '>' || c == '/' || Character.isWhitespace(c))) {
+            rawMatch = c == '<' ? 1 : 0; // 例如 "</scripts"
+        } else if (c == '>') {
+            state = State.TEXT;
+            rawTextTag = null;
+            rawMatch = 0;
+        } else {
+            rawMatch = target + 1;
+        }
+    }
+
+    private void onTag(CharSequence raw) {
+        if (raw.length() == 0) {
+            appendText('<');
+            appendText('>');
+            return;
+        }
+        char first = raw.charAt(0);
+        if (first == '!' || first == '?') {
+            return; // <!DOCTYPE ...>、<?xml ...?>
+        }
+        boolean closing = first == '/';
+        int start = closing ? 1 : 0;
+        int end = start;
+        while (end < raw.length() && !Character.isWhitespace(raw.charAt(end)) && raw.charAt(end) != '/') {
+            end++;
+        }
+        if (end == start || !Character.isLetter(raw.charAt(start))) {
+            // 不是標籤，例如 "< 3"：當作文字
+            appendText('<');
+            appendTextChars(raw);
+            appendText('>');
+            return;
+        }
+        String name = raw.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+        blockClosed = false;
+
+        if (closing) {
+            if (name.equals("head")) {
+                inHead = false;
+            } else if (name.equals("a")) {
+                closeAnchor();
+            }
+            if (BLOCK_TAGS.contains(name)) {
+                blockClosed = true;
+            }
+            return;
+        }
+
+        boolean selfClosing = raw.charAt(raw.length() - 1) == '/';
+        if (inHead && !HEAD_TAGS.contains(name)) {
+            inHead = false; // 省略了 </head>，例如 <head><title>..</title><p>...
+        }
+        switch (name) {
+            case "head":
+                inHead = true;
+                break;
+            case "body":
+                inHead = false;
+                break;
+            case "base":
+                String baseHref = attribute(raw, "href");
+                if (baseHref != null) {
+                    URI resolved = resolve(baseHref);
+                    if (resolved != null) {
+                        base = resolved;
+                    }
+                }
+                break;
+            case "a":
+                closeAnchor();
+                anchorHref = tagTruncated ? null : attribute(raw, "href");
+                anchorText.setLength(0);
+                break;
+            default:
+                break;
+        }
+        if (BLOCK_TAGS.contains(name)) {
+            pendingSpace = true;
+        }
+        // body 裡的 <title> 文字 Jsoup 會保留，只有 head 裡的略過
+        boolean rawText = RAW_TEXT_TAGS.contains(name) || (inHead && name.equals("title"));
+        if (rawText && !selfClosing) {
+            state = State.RAW_TEXT;
+            rawTextTag = name;
+            rawMatch = 0;
+        }
+    }
+
+    private void closeAnchor() {
+        if (anchorHref == null) {
+            return;
+        }
+        URI resolved = resolve(anchorHref.trim());
+        if (resolved != null) {
+            String absUrl = resolved.toString();
+            if (absUrl.startsWith("http://") || absUrl.startsWith("https://")) {
+                links.add(new ProcessedPage.Link(absUrl, anchorText.toString().trim()));
+            }
+        }
+        anchorHref = null;
+        anchorText.setLength(0);
+    }
+
+    private URI resolve(String href) {
+        try {
+            URI uri = new URI(href.replace(" ", "%20"));
+            return base == null ? (uri.isAbsolute() ? uri : null) : base.resolve(uri);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void appendEntity() {
+        String decoded = entityValue(entity.toString());
+        if (decoded != null) {
+            appendTextChars(decoded);
+        } else {
+            appendText('&');
+            appendTextChars(entity);
+            appendText(';');
+        }
+    }
+
+    /**
+     * entity 名稱 (不含 & 與 ;) 對應的文字；不認得回傳 null
+     */
+    private static String entityValue(String name) {
+        Character named = NAMED_ENTITIES.get(name.toLowerCase(Locale.ROOT));
+        if (named != null) {
+            return String.valueOf(named);
+        }
+        if (name.startsWith("#") && name.length() > 1) {
+            try {
+                int codePoint = name.charAt(1) == 'x' || name.charAt(1) == 'X'
+                        ? Integer.parseInt(name.substring(2), 16)
+                        : Integer.parseInt(name.substring(1));
+                if (Character.isValidCodePoint(codePoint)) {
+                    return new String(Character.toChars(codePoint));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void appendTextChars(CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            appendText(chars.charAt(i));
+        }
+    }
+
+    /**
+     * 加入一個文字字元：壓縮空白，head 內的空白不算 (head 裡出現其它文字表示 head 已結束)
+     */
+    private void appendText(char c) {
+        if (c == ZERO_WIDTH_SPACE || c == SOFT_HYPHEN) {
+            return;
+        }
+        if (blockClosed) {
+            pendingSpace = true;
+            blockClosed = false;
+        }
+        boolean whitespace = isSpace(c);
+        if (inHead) {
+            if (whitespace) {
+                return;
+            }
+            inHead = false;
+        }
+        if (whitespace) {
+            pendingSpace = true;
+            return;
+        }
+        if (pendingSpace) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            if (anchorHref != null && anchorText.length() > 0) {
+                anchorText.append(' ');
+            }
+            pendingSpace = false;
+        }
+        text.append(c);
+        if (anchorHref != null) {
+            anchorText.append(c);
+        }
+    }
+
+    /**
+     * 取出屬性值 (會解開 &amp; 等常見 entity)；沒有該屬性回傳 null
+     */
+    static String attribute(CharSequence raw, String name) {
+        int i = 0;
+        int n = raw.length();
+        // 跳過標籤名稱
+        while (i < n && !Character.isWhitespace(raw.charAt(i))) {
+            i++;
+        }
+        while (i < n) {
+            while (i < n && (Character.isWhitespace(raw.charAt(i)) || raw.charAt(i) == '/')) {
+                i++;
+            }
+            int nameStart = i;
+            while (i < n && raw.charAt(i) != '=' && !Character.isWhitespace(raw.charAt(i)) && raw.charAt(i) != '/') {
+                i++;
+            }
+            String attrName = raw.subSequence(nameStart, i).toString();
+            while (i < n && Character.isWhitespace(raw.charAt(i))) {
+                i++;
+            }
+            String value = "";
+            if (i < n && raw.charAt(i) == '=') {
+                i++;
+                while (i < n && Character.isWhitespace(raw.charAt(i))) {
+                    i++;
+                }
+                if (i < n && (raw.charAt(i) == '"' || raw.charAt(i) == '\'')) {
+                    char q = raw.charAt(i++);
+                    int valueStart = i;
+                    while (i < n && raw.charAt(i) != q) {
+                        i++;
+                    }
+                    value = raw.subSequence(valueStart, i).toString();
+                    i++;
+                } else {
+                    int valueStart = i;
+                    while (i < n && !Character.isWhitespace(raw.charAt(i))) {
+                        i++;
+                    }
+                    value = raw.subSequence(valueStart, i).toString();
+                }
+            }
+            if (attrName.equalsIgnoreCase(name)) {
+                return decodeEntities(value);
+            }
+            if (nameStart == i) {
+                i++; // 避免卡住
+            }
+        }
+        return null;
+    }
+
+    private static String decodeEntities(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            int semi = c == '&' ? value.indexOf(';', i) : -1;
+            String decoded = semi > i + 1 && semi - i - 1 <= MAX_ENTITY_CHARS
+                    ? entityValue(value.substring(i + 1, semi)) : null;
+            if (decoded != null) {
+                out.append(decoded);
+                i = semi + 1;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    // 與 Jsoup 的 StringUtil.isActuallyWhitespace 相同；全形空白 (U+3000) 等不算空白
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == NBSP;
+    }
+
+    private static char lastNonSpace(CharSequence s) {
+        for (int i = s.length() - 1; i >= 0; i--) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return s.charAt(i);
+            }
+        }
+        return 0;
+    }
+}
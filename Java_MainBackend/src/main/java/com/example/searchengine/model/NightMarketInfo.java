@@ -0,0 +1,110 @@
+package com.example.searchengine.model;
+
+import java.time.DayOfWeek;
+
+/**
+ * nightmarket_info.csv 的一列：夜市名稱、所在行政區 / 路段、營業日、縣市。
+ *
+ * 營業日另外解析成 bitmask (bit 0 = 週一 ... bit 6 = 週日)：
+ * "每日" 為全週；"不定時"、空白等無法判斷的為 0。
+ */
+public class NightMarketInfo {
+
+    public static final int EVERY_DAY = 0x7F;
+
+    private static final String WEEKDAY_CHARS = "一二三四五六日";
+
+    private final String name;
+    private final String district;
+    private final String openDays;
+    private final int openDaysMask;
+    private final String city;
+
+    public NightMarketInfo(String name, String district, String openDays) {
+        this(name, district, openDays, "");
+    }
+
+    public NightMarketInfo(String name, String district, String openDays, String city) {
+        this.name = name;
+        this.district = district;
+        this.openDays = openDays;
+        this.openDaysMask = parseOpenDays(openDays);
+        this.city = city == null ? "" : city;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 例如 "士林區基河路"
+     */
+    public String getDistrict() {
+        return district;
+    }
+
+    /**
+     * CSV 原始的營業日文字，例如 "週三、六"
+     */
+    public String getOpenDays() {
+        return openDays;
+    }
+
+    /**
+     * 例如 "臺北市"；CSV 沒有這一欄時為 ""
+     */
+    public String getCity() {
+        return city;
+    }
+
+    public int getOpenDaysMask() {
+        return openDaysMask;
+    }
+
+    public boolean isOpenOn(DayOfWeek day) {
+        return (openDaysMask & dayBit(day)) != 0;
+    }
+
+    public static int dayBit(DayOfWeek day) {
+        return 1 << (day.getValue() - 1);
+    }
+
+    /**
+     * 解析營業日文字：「每日」、「週三、六」、「週四～日」、「週五六日」、「周日」等
+     */
+    public static int parseOpenDays(String text) {
+        if (text == null) {
+            return 0;
+        }
+        if (text.contains("每日")) {
+            return EVERY_DAY;
+        }
+        String days = text.replace("週", "").replace("周", "").replace("天", "日").trim();
+        if (days.isEmpty()) {
+            return 0;
+        }
+
+        int mask = 0;
+        int previous = -1;
+        boolean range = false;
+        for (int i = 0; i < days.length(); i++) {
+            char c = days.charAt(i);
+            int index = WEEKDAY_CHARS.indexOf(c);
+            if (index >= 0) {
+                if (range && previous >= 0) {
+                    for (int d = previous; d != index; d = (d + 1) % 7) {
+                        mask |= 1 << d;
+                    }
+                }
+                mask |= 1 << index;
+                previous = index;
+                range = false;
+            } else if (c == '～' || c == '~' || c == '至' || c == '-') {
+                range = true;
+            } else if (c != '、' && c != ',' && c != '，' && !Character.isWhitespace(c)) {
+                return 0; // 例如 "不定時"、"每年農曆七月二十九日"、"永久停業"
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.searchengine.model;
+
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * 夜市資料的欄位式 (columnar) 記憶體儲存，建立後不可變。
+ *
+ * 每個夜市以 id (CSV 順序) 表示，各欄位各存一個陣列；名稱、縣市與行政區字串都 intern，
+ * 營業日存成 7 bit 的 bitmask，另外針對每個星期幾與每個「縣市 + 行政區」各建一個 BitSet，
+ * 「今天有開的」、「某行政區的」夜市都能直接以 BitSet 運算取得。
+ *
+ * 行政區一律連同縣市一起當 key：中正區、中山區、東區、北區等名稱在好幾個縣市都有。
+ */
+public final class NightMarketStore {
+
+    public static final NightMarketStore EMPTY = new NightMarketStore(Collections.emptyList());
+
+    private final String[] names;
+    private final String[] cities;      // 縣市，例如 "臺北市"；CSV 沒有這一欄時為 ""
+    private final String[] districts;   // 行政區，例如 "士林區"；無法判斷時為 ""
+    private final String[] locations;   // CSV 原始的 行政區 / 路段
+    private final byte[] openDays;      // bit 0 = 週一 ... bit 6 = 週日
+
+    private final Map<String, Integer> idByName;
+    private final Map<String, BitSet> idsByName;             // 不同縣市可能有同名夜市 (例如 公館夜市)
+    private final Map<String, BitSet> idsByDistrict;         // key: 縣市 + 行政區，例如 "基隆市中正區"
+    private final Map<String, Set<String>> citiesByDistrict; // 行政區 -> 有這個行政區的縣市
+    private final Set<String> cityNames;
+    private final BitSet[] idsByDay = new BitSet[7];
+
+    private NightMarketStore(List<NightMarketInfo> nightMarkets) {
+        int n = nightMarkets.size();
+        names = new String[n];
+        cities = new String[n];
+        districts = new String[n];
+        locations = new String[n];
+        openDays = new byte[n];
+
+        Map<String, Integer> byName = new HashMap<>();
+        Map<String, BitSet> allByName = new HashMap<>();
+        Map<String, BitSet> byDistrict = new HashMap<>();
+        Map<String, Set<String>> districtCities = new HashMap<>();
+        for (int d = 0; d < 7; d++) {
+            idsByDay[d] = new BitSet(n);
+        }
+
+        for (int id = 0; id < n; id++) {
+            NightMarketInfo info = nightMarkets.get(id);
+            names[id] = info.getName().intern();
+            cities[id] = info.getCity().intern();
+            locations[id] = info.getDistrict().intern();
+            districts[id] = extractDistrict(info.getDistrict()).intern();
+            openDays[id] = (byte) info.getOpenDaysMask();
+
+            byName.putIfAbsent(names[id], id);
+            allByName.computeIfAbsent(names[id], k -> new BitSet(n)).set(id);
+            if (!districts[id].isEmpty()) {
+                byDistrict.computeIfAbsent(cities[id] + districts[id], k -> new BitSet(n)).set(id);
+                districtCities.computeIfAbsent(districts[id], k -> new HashSet<>()).add(cities[id]);
+            }
+            for (int d = 0; d < 7; d++) {
+                if ((openDays[id] & (1 << d)) != 0) {
+                    idsByDay[d].set(id);
+                }
+            }
+        }
+        idByName = Map.copyOf(byName);
+        idsByName = Map.copyOf(allByName);
+        idsByDistrict = Map.copyOf(byDistrict);
+        Map<String, Set<String>> frozen = new HashMap<>();
+        districtCities.forEach((district, inCities) -> frozen.put(district, Set.copyOf(inCities)));
+        citiesByDistrict = Map.copyOf(frozen);
+        Set<String> knownCities = new HashSet<>(Arrays.asList(cities));
+        knownCities.remove("");
+        cityNames = Set.copyOf(knownCities);
+    }
+
+    public static NightMarketStore of(List<NightMarketInfo> nightMarkets) {
+        return nightMarkets.isEmpty() ? EMPTY : new NightMarketStore(nightMarkets);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * 依名稱取得 id；找不到回傳 -1
+     */
+    public int indexOf(String name) {
+        Integer id = name == null ? null : idByName.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * 叫這個名稱的所有夜市 id (複本，可自由修改)
+     */
+    public BitSet named(String name) {
+        BitSet ids = name == null ? null : idsByName.get(name);
+        return ids == null ? new BitSet() : (BitSet) ids.clone();
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public String city(int id) {
+        return cities[id];
+    }
+
+    public String district(int id) {
+        return districts[id];
+    }
+
+    public String location(int id) {
+        return locations[id];
+    }
+
+    public boolean isOpenOn(int id, DayOfWeek day) {
+        return (openDays[id] & NightMarketInfo.dayBit(day)) != 0;
+    }
+
+    /**
+     * 該天有營業的夜市 id (複本，可自由修改)
+     */
+    public BitSet openOn(DayOfWeek day) {
+        return (BitSet) idsByDay[day.getValue() - 1].clone();
+    }
+
+    /**
+     * 位於該縣市該行政區的夜市 id (複本，可自由修改)；district 需為完整名稱 (例如 "中正區")
+     */
+    public BitSet inDistrict(String city, String district) {
+        BitSet ids = (city == null || district == null) ? null : idsByDistrict.get(city + district);
+        return ids == null ? new BitSet() : (BitSet) ids.clone();
+    }
+
+    /**
+     * 有這個行政區 (完整名稱) 的縣市；不是已知的行政區時為空集合
+     */
+    public Set<String> citiesOf(String district) {
+        return district == null ? Collections.emptySet() : citiesByDistrict.getOrDefault(district, Collections.emptySet());
+    }
+
+    /**
+     * 把查詢字轉成完整的行政區名稱：本身就是行政區時原樣回傳；剛好 2 個字時 (例如 "士林")
+     * 才試著補上「區/鄉/鎮/市」，較長的字 (例如 "夜市美食") 不補，以免誤判。不是行政區時回傳 null
+     */
+    public String resolveDistrict(String word) {
+        if (word == null) {
+            return null;
+        }
+        if (citiesByDistrict.containsKey(word)) {
+            return word;
+        }
+        if (word.length() == 2) {
+            for (String suffix : DISTRICT_SUFFIXES) {
+                if (citiesByDistrict.containsKey(word + suffix)) {
+                    return word + suffix;
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean isDistrict(String district) {
+        return resolveDistrict(district) != null;
+    }
+
+    /**
+     * 把查詢字轉成 CSV 裡的縣市名稱 ("台" 視同 "臺"，可省略「市/縣」)；
+     * "新竹"、"嘉義" 這類市縣同名的會回傳兩個。不是縣市時為空集合
+     */
+    public Set<String> resolveCities(String word) {
+        if (word == null || word.length() < 2) {
+            return Collections.emptySet();
+        }
+        String normalized = word.replace('台', '臺');
+        if (cityNames.contains(normalized)) {
+            return Collections.singleton(normalized);
+        }
+        Set<String> resolved = new HashSet<>();
+        for (String suffix : CITY_SUFFIXES) {
+            if (cityNames.contains(normalized + suffix)) {
+                resolved.add(normalized + suffix);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * 所有行政區名稱 (不含縣市)
+     */
+    public Set<String> getDistricts() {
+        return citiesByDistrict.keySet();
+    }
+
+    /**
+     * 所有夜市名稱 (依 id 順序)
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    private static final String[] DISTRICT_SUFFIXES = {"區", "鄉", "鎮", "市"};
+    private static final String[] CITY_SUFFIXES = {"市", "縣"};
+
+    /**
+     * 由「行政區 + 路段」取出行政區：前 4 個字內有「區」就取到「區」，否則取到第一個「鄉/鎮/市」
+     * 例如 "士林區基河路" -> "士林區"、"前鎮區..." -> "前鎮區"、"太保市..." -> "太保市"
+     */
+    static String extractDistrict(String location) {
+        if (location == null) {
+            return "";
+        }
+        int district = location.indexOf('區');
+        if (district >= 1 && district <= 3) {
+            return location.substring(0, district + 1);
+        }
+        for (int i = 1; i < Math.min(location.length(), 4); i++) {
+            char c = location.charAt(i);
+            if (c == '鄉' || c == '鎮' || c == '市') {
+                return location.substring(0, i + 1);
+            }
+        }
+        return "";
+    }
+}
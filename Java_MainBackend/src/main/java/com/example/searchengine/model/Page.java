@@ -1,14 +1,14 @@
 package com.example.searchengine.model;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Page {
     private String title;
     private String url;
     private int score; // 此分數為該頁面本身的分數(不含子頁)
-    private List<Page> children;
+    private List<Page> children; // 子頁可能由不同執行緒平行加入
     private Map<String, String> scoreDetails; // 保存分數計算細節
 
     public Page(String title, String url, int score, Map<String, String> scoreDetails) {
@@ -16,7 +16,7 @@ public class Page {
         this.url = url;
         this.score = score;
         this.scoreDetails = scoreDetails;
-        this.children = new ArrayList<>();
+        this.children = new CopyOnWriteArrayList<>();
     }
 
     // Getter 和 Setter
@@ -36,6 +36,17 @@ public class Page {
         return children;
     }
 
+    /**
+     * 本頁分數 + 所有 (已完成的) 子頁的聚合分數
+     */
+    public int getAggregatedScore() {
+        int total = score;
+        for (Page child : children) {
+            total += child.getAggregatedScore();
+        }
+        return total;
+    }
+
     public void addChild(Page child) {
         this.children.add(child);
     }
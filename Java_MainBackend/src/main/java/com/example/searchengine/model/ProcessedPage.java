@@ -0,0 +1,78 @@
+package com.example.searchengine.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 已解析過的網頁：只保留正規化後的 body 文字與絕對網址的外連清單。
+ *
+ * 每個 URL 只需解析一次，計分 (body 文字) 與子頁挑選 (外連) 共用同一份結果，
+ * 快取也改存這個比原始 HTML 小很多的形式。
+ */
+public class ProcessedPage {
+
+    /**
+     * 抓取失敗 (403 / 非 200 / 下載連結等) 時使用的空頁面
+     */
+    public static final ProcessedPage EMPTY = new ProcessedPage("", Collections.emptyList());
+
+    /**
+     * 頁面上的一個外連 (絕對網址 + 錨點文字)
+     */
+    public static class Link {
+        private final String url;
+        private final String anchorText;
+
+        public Link(String url, String anchorText) {
+            this.url = url;
+            this.anchorText = anchorText;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getAnchorText() {
+            return anchorText;
+        }
+    }
+
+    private final String text;
+    private final List<Link> links;
+
+    public ProcessedPage(String text, List<Link> links) {
+        this.text = text;
+        this.links = links;
+    }
+
+    /**
+     * 解析 HTML：取出 body 文字，以及所有 http/https 的絕對外連 (依文件順序)。
+     * 使用串流式的 HtmlStreamParser，不建 DOM
+     */
+    public static ProcessedPage fromHtml(String htmlContent, String baseUrl) {
+        return HtmlStreamParser.parse(htmlContent, baseUrl);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public List<Link> getLinks() {
+        return links;
+    }
+
+    public boolean isEmpty() {
+        return text.isEmpty() && links.isEmpty();
+    }
+
+    /**
+     * 估計佔用的記憶體大小 (UTF-16，每字元 2 bytes)，供快取計算容量
+     */
+    public long estimatedBytes() {
+        long chars = text.length();
+        for (Link link : links) {
+            chars += link.getUrl().length() + link.getAnchorText().length();
+        }
+        return 2 * chars;
+    }
+}
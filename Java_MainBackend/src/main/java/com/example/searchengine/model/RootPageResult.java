@@ -0,0 +1,53 @@
+package com.example.searchengine.model;
+
+import java.util.Map;
+
+/**
+ * 用來儲存 root page 的結果(包含最終聚合分數)
+ */
+public class RootPageResult {
+    private String title;
+    private String url;
+    private int aggregatedScore;
+    private String snippet; // 新增的字段
+    private Map<String, String> scoreDetails; // 用於記錄分數細節
+    private boolean cutOff; // 超過 deadline 而未完成計分
+
+    public RootPageResult(String title, String url, int aggregatedScore, String snippet, Map<String, String> scoreDetails) {
+        this(title, url, aggregatedScore, snippet, scoreDetails, false);
+    }
+
+    public RootPageResult(String title, String url, int aggregatedScore, String snippet, Map<String, String> scoreDetails, boolean cutOff) {
+        this.title = title;
+        this.url = url;
+        this.aggregatedScore = aggregatedScore;
+        this.snippet = snippet; // 初始化 snippet
+        this.scoreDetails = scoreDetails;
+        this.cutOff = cutOff;
+    }
+
+    // Getter 和 Setter
+    public String getTitle() {
+        return title;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getAggregatedScore() {
+        return aggregatedScore;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public Map<String, String> getScoreDetails() {
+        return scoreDetails;
+    }
+
+    public boolean isCutOff() {
+        return cutOff;
+    }
+}
@@ -3,15 +3,23 @@ package com.example.searchengine.model;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.*;
+import okio.BufferedSink;
 import org.apache.commons.csv.*;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.*;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class VoyageReRanker {
 
+    private static final Logger logger = LoggerFactory.getLogger(VoyageReRanker.class);
+
     // 用來封裝“最佳匹配文字”與“對應分數”的資料結構
     public static class BestMatchResponse {
         private final String bestDocument;
@@ -31,88 +39,203 @@ public class VoyageReRanker {
         }
     }
 
-    private final Map<String, List<String>> keywordLists;
+    private static final String RERANK_BATCH_URL = "http://localhost:5000/rerank_batch";
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    // 所有實例共用同一個 HTTP client (連線池 / keep-alive)，不再每次呼叫都 new RestTemplate
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(2, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .build();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final List<String> CITIES = List.of(
+            "臺北市", "新北市", "基隆市", "新竹市", "桃園市", "新竹縣", "宜蘭縣",
+            "臺中市", "苗栗縣", "彰化縣", "南投縣", "雲林縣",
+            "高雄市", "臺南市", "嘉義市", "嘉義縣", "屏東縣", "澎湖縣",
+            "花蓮縣", "臺東縣", "金門縣", "連江縣"
+    );
+
+    private final Path csvPath;
+
+    // 載入完成後即凍結為不可變的 CandidateSet；CSV 重新載入時整個替換 (查詢中的請求仍使用舊的)
+    private volatile CandidateSet candidates;
 
     public VoyageReRanker() {
-        keywordLists = new HashMap<>();
-        initializeKeywordLists();
-        loadKeywordsFromCSV("nightmarket_info.csv", "Night Market Name");
+        this("nightmarket_info.csv");
+    }
+
+    @Autowired
+    public VoyageReRanker(@Value("${gazetteer.csv-path:nightmarket_info.csv}") String csvPath) {
+        this.csvPath = Paths.get(csvPath);
+        CandidateSet loaded = null;
+        try {
+            loaded = loadCandidates();
+        } catch (IOException e) {
+            logger.warn("Could not load night markets from {}, using county/city list only", this.csvPath, e);
+        }
+        // 讀不到 CSV 時只有縣市清單
+        candidates = loaded != null ? loaded : CandidateSet.of(Map.of("County/City", CITIES));
     }
 
+    /**
+     * 不可修改的 類別 -> 名稱清單
+     */
     public Map<String, List<String>> getKeywordLists() {
-        return keywordLists;
+        return candidates.getKeywordLists();
+    }
+
+    /**
+     * 預先建好的候選清單 (合併陣列、document -> 類別索引、預先序列化的 JSON、CSV 夜市資訊)
+     */
+    public CandidateSet getCandidates() {
+        return candidates;
+    }
+
+    public Path getCsvPath() {
+        return csvPath;
+    }
+
+    /**
+     * 重新讀取 CSV 並替換候選清單 (在背景執行緒呼叫)；夜市名稱沒變時沿用原本的合併陣列與 JSON。
+     * 讀取失敗或讀到空檔 (例如檔案寫到一半) 時保留原本的清單並回傳 false。
+     */
+    public boolean reload() {
+        CandidateSet current = candidates;
+        CandidateSet loaded;
+        try {
+            loaded = loadCandidates(current);
+        } catch (IOException e) {
+            logger.warn("Could not reload night markets from {}, keeping the current list", csvPath, e);
+            return false;
+        }
+        if (loaded.getNightMarkets().isEmpty() && !current.getNightMarkets().isEmpty()) {
+            logger.warn("{} has no night markets, keeping the current list", csvPath);
+            return false;
+        }
+        candidates = loaded;
+        return true;
+    }
+
+    private CandidateSet loadCandidates() throws IOException {
+        return loadCandidates(null);
     }
 
-    private void initializeKeywordLists() {
-        keywordLists.put("County/City", Arrays.asList(
-                "臺北市", "新北市", "基隆市", "新竹市", "桃園市", "新竹縣", "宜蘭縣",
-                "臺中市", "苗栗縣", "彰化縣", "南投縣", "雲林縣",
-                "高雄市", "臺南市", "嘉義市", "嘉義縣", "屏東縣", "澎湖縣",
-                "花蓮縣", "臺東縣", "金門縣", "連江縣"
-        ));
+    /**
+     * @param current 目前的候選清單 (第一次載入時為 null)
+     */
+    private CandidateSet loadCandidates(CandidateSet current) throws IOException {
+        List<NightMarketInfo> nightMarkets = loadNightMarketsFromCSV(csvPath);
+        List<String> names = new ArrayList<>();
+        for (NightMarketInfo info : nightMarkets) {
+            names.add(info.getName());
+        }
+        logger.info("Loaded {} keywords into category: Night Market Name", names.size());
+
+        if (current != null && names.equals(current.getKeywordLists().get(CandidateSet.NIGHT_MARKET_NAME))) {
+            return current.withNightMarkets(nightMarkets);
+        }
+        Map<String, List<String>> keywordLists = new HashMap<>();
+        keywordLists.put("County/City", CITIES);
+        keywordLists.put("Night Market Name", names);
+        return CandidateSet.of(keywordLists, nightMarkets);
     }
 
-    private void loadKeywordsFromCSV(String filePath, String category) {
-        try (Reader reader = Files.newBufferedReader(Paths.get(filePath));
+    /**
+     * 讀取 CSV：名稱, 行政區 / 路段, 營業日, 縣市 (後三欄可缺)
+     */
+    private static List<NightMarketInfo> loadNightMarketsFromCSV(Path filePath) throws IOException {
+        try (Reader reader = Files.newBufferedReader(filePath);
              CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT)) {
 
-            List<String> keywords = new ArrayList<>();
+            List<NightMarketInfo> nightMarkets = new ArrayList<>();
             for (CSVRecord record : csvParser) {
-                String keyword = record.get(0).trim(); // 取每行的第一列
-                if (!keyword.isEmpty()) {
-                    keywords.add(keyword);
+                String name = record.get(0).trim(); // 取每行的第一列
+                if (name.isEmpty()) {
+                    continue;
                 }
+                String district = record.size() > 1 ? record.get(1).trim() : "";
+                String openDays = record.size() > 2 ? record.get(2).trim() : "";
+                String city = record.size() > 3 ? record.get(3).trim() : "";
+                nightMarkets.add(new NightMarketInfo(name, district, openDays, city));
             }
-            keywordLists.put(category, keywords);
-            System.out.println("成功加載 " + keywords.size() + " 個關鍵字到類別: " + category);
-
-        } catch (IOException e) {
-            e.printStackTrace();
+            return nightMarkets;
         }
     }
 
     /**
-     * 核心函式：傳入輸入字串 (input) 與候選文檔 (candidates)，呼叫 Python API 進行相似度比較，
-     * 回傳「最佳匹配文字 + 分數」。
+     * 核心函式：呼叫 Python API 進行相似度比較，一次請求送出同一查詢的所有 token (候選清單只送一次)，
+     * 回傳與 inputs 同順序的結果；單一 token 失敗或無匹配時該位置為 null，整批失敗則全部為 null。
      */
-    public BestMatchResponse getBestMatchWithScore(String input, List<String> candidates) {
-        String apiUrl = "http://localhost:5000/rerank";
-        RestTemplate restTemplate = new RestTemplate();
-    
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("query", input);
-        requestBody.put("documents", candidates);
-    
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-    
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-    
+    public List<BestMatchResponse> getBestMatchesWithScore(List<String> inputs, CandidateSet candidates) {
+        List<BestMatchResponse> matches = new ArrayList<>(Collections.nCopies(inputs.size(), null));
+        if (inputs.isEmpty()) {
+            return matches;
+        }
+
         try {
             // e.g.
             // {
-            //   "ranked_documents": [
-            //     {"document": "臺中市", "score": 0.95},
-            //     {"document": "彰化縣", "score": 0.85}
+            //   "results": [
+            //     {"query": "士林", "ranked_documents": [{"document": "士林夜市", "score": 0.93}, ...]},
+            //     {"query": "雞排", "ranked_documents": [...]}
             //   ]
             // }
-            ResponseEntity<Map> response = restTemplate.postForEntity(apiUrl, request, Map.class);
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                List<Map<String, Object>> rankedDocuments = 
-                    (List<Map<String, Object>>) response.getBody().get("ranked_documents");
-    
-                if (rankedDocuments != null && !rankedDocuments.isEmpty()) {
-                    // 取出第一個文檔及其分數
-                    Map<String, Object> bestMatch = rankedDocuments.get(0);
-                    String bestDoc = (String) bestMatch.get("document");
-                    double bestScore = ((Number) bestMatch.get("score")).doubleValue();
-    
-                    return new BestMatchResponse(bestDoc, bestScore);
+            CandidateSet.BatchRequest batchRequest = candidates.batchRequest(inputs);
+            Map<String, Object> body = post(RERANK_BATCH_URL, new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return JSON;
+                }
+
+                @Override
+                public long contentLength() {
+                    return batchRequest.contentLength();
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    batchRequest.writeTo(sink.outputStream());
+                }
+            });
+            List<Map<String, Object>> results = (List<Map<String, Object>>) body.get("results");
+            if (results != null) {
+                for (int i = 0; i < results.size() && i < matches.size(); i++) {
+                    matches.set(i, toBestMatch(results.get(i)));
                 }
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.warn("Reranker batch request failed for {}", inputs, e);
         }
-        return null; // 若呼叫失敗或無匹配結果則回傳 null
-    }    
+        return matches;
+    }
+
+    private static Map<String, Object> post(String url, RequestBody requestBody) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(requestBody)
+                .build();
+
+        try (Response response = HTTP_CLIENT.newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Unexpected code " + response);
+            }
+            return OBJECT_MAPPER.readValue(response.body().string(), Map.class);
+        }
+    }
+
+    private static BestMatchResponse toBestMatch(Map<String, Object> body) {
+        if (body == null) {
+            return null;
+        }
+        List<Map<String, Object>> rankedDocuments = (List<Map<String, Object>>) body.get("ranked_documents");
+        if (rankedDocuments == null || rankedDocuments.isEmpty()) {
+            return null;
+        }
+        // 取出第一個文檔及其分數
+        Map<String, Object> bestMatch = rankedDocuments.get(0);
+        String bestDoc = (String) bestMatch.get("document");
+        double bestScore = ((Number) bestMatch.get("score")).doubleValue();
+        return new BestMatchResponse(bestDoc, bestScore);
+    }
 }
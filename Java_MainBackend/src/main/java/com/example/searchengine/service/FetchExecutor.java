@@ -0,0 +1,178 @@
+package com.example.searchengine.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 整個應用程式共用的網頁抓取執行緒池 (取代每個請求各自 new 一個 FixedThreadPool)。
+ *
+ * - 在 JDK 21 以上執行時使用 virtual threads，每個任務一條，並用 Semaphore 限制全域同時抓取數
+ * - 較舊的 JDK 則退回固定大小的 platform thread pool，大小即為全域上限
+ *
+ * 同一個 pool 也執行關鍵字處理 (翻譯 / CKIP / reranker)，任務不要在這裡等網頁下載
+ * (用 PageFetchService.fetchAsync 再接續計分)，否則 platform threads 模式下新的查詢會排在卡住的下載後面。
+ *
+ * 專案仍以 Java 17 編譯，因此 virtual threads 透過反射取得。
+ * (本身是 Executor bean，applicationTaskExecutor 改由 SearchEngineApplication 宣告)
+ */
+@Component
+public class FetchExecutor extends AbstractExecutorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FetchExecutor.class);
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;        // 只有 virtual threads 模式使用
+    private final int maxConcurrency;
+    private final AtomicInteger waiting = new AtomicInteger(0);
+
+    public FetchExecutor(
+            @Value("${fetch.executor.max-concurrency:64}") int maxConcurrency,
+            @Value("${fetch.executor.virtual-threads:true}") boolean virtualThreads
+    ) {
+        this.maxConcurrency = maxConcurrency;
+
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            this.delegate = virtualExecutor;
+            this.permits = new Semaphore(maxConcurrency, true);
+            logger.info("FetchExecutor using virtual threads, max concurrency: {}", maxConcurrency);
+        } else {
+            AtomicInteger counter = new AtomicInteger(0);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    maxConcurrency, maxConcurrency,
+                    60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    r -> {
+                        Thread t = new Thread(r, "page-fetch-" + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            this.delegate = pool;
+            this.permits = null;
+            logger.info("FetchExecutor using platform threads, pool size: {}", maxConcurrency);
+        }
+    }
+
+    /**
+     * JDK 21+ 才有 Executors.newVirtualThreadPerTaskExecutor()，不支援時回傳 null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (permits == null) {
+            delegate.execute(command);
+            return;
+        }
+        delegate.execute(() -> {
+            waiting.incrementAndGet();
+            boolean interrupted = false;
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } finally {
+                waiting.decrementAndGet();
+            }
+            if (interrupted) {
+                onInterruptedWhileQueued(command);
+                return;
+            }
+            try {
+                command.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * 排隊等 permit 時被中斷 (例如 shutdownNow)：任務不能默默丟掉，否則等它結果的人會永遠等下去。
+     * submit() 建立的 FutureTask 直接取消；其它任務 (例如 CompletableFuture.supplyAsync) 仍取得 permit 後執行，
+     * 執行時保留中斷狀態，由任務自己結束並完成它的 future
+     */
+    private void onInterruptedWhileQueued(Runnable command) {
+        if (command instanceof RunnableFuture) {
+            ((RunnableFuture<?>) command).cancel(false);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        permits.acquireUninterruptibly();
+        Thread.currentThread().interrupt();
+        try {
+            command.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return permits != null;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 目前排隊中 (尚未開始執行) 的任務數
+     */
+    public int getQueueDepth() {
+        if (permits != null) {
+            return waiting.get();
+        }
+        return ((ThreadPoolExecutor) delegate).getQueue().size();
+    }
+
+    /**
+     * 目前正在執行的任務數
+     */
+    public int getActiveCount() {
+        if (permits != null) {
+            return maxConcurrency - permits.availablePermits();
+        }
+        return ((ThreadPoolExecutor) delegate).getActiveCount();
+    }
+
+    @PreDestroy
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
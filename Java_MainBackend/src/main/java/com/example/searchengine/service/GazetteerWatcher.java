@@ -0,0 +1,142 @@
+package com.example.searchengine.service;
+
+import com.example.searchengine.model.ClassificationModel;
+import com.example.searchengine.model.VoyageReRanker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 監看 nightmarket_info.csv (NIO WatchService)，檔案變動後在背景重新載入：
+ *
+ * 1. VoyageReRanker 重新解析 CSV、建好新的 CandidateSet 後替換 (夜市名稱沒變時沿用合併陣列與 JSON)
+ * 2. ClassificationModel 只把新增 / 移除的名稱套用到本地索引，分類快取也只移除受影響的 token
+ *
+ * 兩者都是建好後才以 volatile 參照替換，進行中的分類繼續使用舊的結構，不會被暫停。
+ * 編輯器存檔常會連續觸發多個事件，收到事件後等 debounce 時間內沒有新事件才載入。
+ */
+@Component
+public class GazetteerWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(GazetteerWatcher.class);
+
+    private final VoyageReRanker voyageReRanker;
+    private final ClassificationModel classificationModel;
+    private final boolean enabled;
+    private final long debounceMs;
+
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    public GazetteerWatcher(
+            VoyageReRanker voyageReRanker,
+            ClassificationModel classificationModel,
+            @Value("${gazetteer.watch:true}") boolean enabled,
+            @Value("${gazetteer.reload-debounce-ms:500}") long debounceMs
+    ) {
+        this.voyageReRanker = voyageReRanker;
+        this.classificationModel = classificationModel;
+        this.enabled = enabled;
+        this.debounceMs = debounceMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Path file = voyageReRanker.getCsvPath().toAbsolutePath();
+        Path dir = file.getParent();
+        try {
+            watchService = dir.getFileSystem().newWatchService();
+            // 監看目錄 (WatchService 無法直接監看單一檔案)；用新檔取代舊檔 (rename) 時會是 CREATE
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.warn("Cannot watch {}, hot reload disabled", file, e);
+            return;
+        }
+
+        watcherThread = new Thread(() -> watch(file.getFileName()), "gazetteer-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        logger.info("Watching {} for changes", file);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close(); // take() 會丟 ClosedWatchServiceException 結束迴圈
+            } catch (IOException e) {
+                logger.debug("Error closing watch service", e);
+            }
+        }
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+        }
+    }
+
+    private void watch(Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = pollEvents(key, fileName);
+
+                // debounce：直到一段時間內沒有新事件
+                while (changed) {
+                    WatchKey next = watchService.poll(debounceMs, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    pollEvents(next, fileName);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 關閉中
+        }
+    }
+
+    /**
+     * 取出這個 key 的所有事件並重新註冊；有任何事件是目標檔案時回傳 true
+     */
+    private static boolean pollEvents(WatchKey key, Path fileName) {
+        boolean matched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                matched = true;
+            }
+        }
+        key.reset();
+        return matched;
+    }
+
+    /**
+     * 重新載入 (在 watcher 執行緒上，不佔用請求執行緒)
+     */
+    public void reload() {
+        long start = System.nanoTime();
+        try {
+            if (voyageReRanker.reload()) {
+                classificationModel.refreshKeywordLists();
+                logger.info("Reloaded {} night markets from {} in {} ms",
+                        voyageReRanker.getCandidates().getNightMarkets().size(),
+                        voyageReRanker.getCsvPath(),
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to reload {}", voyageReRanker.getCsvPath(), e);
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package com.example.searchengine.service;
 
 import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
-import com.example.searchengine.model.FetchGoogle;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -14,6 +19,7 @@ import com.google.gson.JsonObject;
 /**
  * 接收關鍵字字串 (空白分隔)，向 Google Cloud Custom Search API 搜尋，
  * 一次最多 10 筆，最多呼叫 5 次以取得前 50 筆結果 (title -> url)。
+ * 5 次呼叫同時送出，再依排名順序合併。
  *
  * 請先於環境變數中設置：
  *   - GOOGLE_CLOUD_API_KEY
@@ -23,23 +29,53 @@ public class GoogleQuery {
     private static final int MAX_RESULTS = 50; // 最多要抓幾筆
     private static final int PAGE_SIZE = 10;   // 一次可抓幾筆，Custom Search API 預設為 10
 
+    private static final String DEFAULT_ENDPOINT = "https://www.googleapis.com/customsearch/v1";
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(5);
+
+    // 所有查詢共用的 HttpClient (連線池 / HTTP2)，5 頁可同時送出
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
     private String queryKeywords;
+    private final String endpoint;
+    private final String apiKey;
+    private final String searchEngineId;
+    private final SearchMetrics searchMetrics;
 
     public GoogleQuery(String queryKeywords) {
+        this(queryKeywords, SearchMetrics.NOOP);
+    }
+
+    /**
+     * 記錄每一頁 API 呼叫的延遲 (search.google.page)
+     */
+    public GoogleQuery(String queryKeywords, SearchMetrics searchMetrics) {
+        // 從環境變數讀取 API_KEY 及 SEARCH_ENGINE_ID
+        this(queryKeywords, DEFAULT_ENDPOINT,
+                System.getenv("GOOGLE_CLOUD_API_KEY"), System.getenv("GOOGLE_CLOUD_SEARCH_ENGINE_ID"),
+                searchMetrics);
+    }
+
+    /**
+     * 指定 API 位址與金鑰 (測試時指向本機的 stub server)
+     */
+    GoogleQuery(String queryKeywords, String endpoint, String apiKey, String searchEngineId,
+                SearchMetrics searchMetrics) {
         this.queryKeywords = queryKeywords;
+        this.endpoint = endpoint;
+        this.apiKey = apiKey;
+        this.searchEngineId = searchEngineId;
+        this.searchMetrics = searchMetrics;
     }
 
     /**
-     * 呼叫一次 API，從指定的 start 值開始抓 10 筆結果
+     * 組出一次 API 呼叫的網址，從指定的 start 值開始抓 10 筆結果
      * @param query 搜尋關鍵字
      * @param start 第幾筆開始 (1-based)
-     * @return 回傳 API 回應的 JSON 字串
      */
-    private String fetchContent(String query, int start) throws IOException {
-        // 從環境變數讀取 API_KEY 及 SEARCH_ENGINE_ID
-        String apiKey = System.getenv("GOOGLE_CLOUD_API_KEY");
-        String searchEngineId = System.getenv("GOOGLE_CLOUD_SEARCH_ENGINE_ID");
-
+    private URI buildUri(String query, int start) throws IOException {
         if (apiKey == null || apiKey.isEmpty()) {
             throw new IOException("未從環境變數中取得 GOOGLE_CLOUD_API_KEY");
         }
@@ -49,109 +85,161 @@ public class GoogleQuery {
 
         // 這裡不使用 num 參數，而是透過預設(10筆)，再用start分頁來抓取
         String urlString = String.format(
-            "https://www.googleapis.com/customsearch/v1?key=%s&cx=%s&q=%s&start=%d",
+            "%s?key=%s&cx=%s&q=%s&start=%d",
+            endpoint,
             URLEncoder.encode(apiKey, "UTF-8"),
             URLEncoder.encode(searchEngineId, "UTF-8"),
             URLEncoder.encode(query, "UTF-8"),
             start
         );
-
-        URL url = new URL(urlString);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(2000);
-        conn.connect();
-
-        int responseCode = conn.getResponseCode();
-        if (responseCode != HttpURLConnection.HTTP_OK) {
-            throw new IOException("Custom Search API 回傳非 200 狀態碼: " + responseCode);
-        }
-
-        // 讀取 API 回應
-        StringBuilder sb = new StringBuilder();
-        try (
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(conn.getInputStream(), "UTF-8")
-            )
-        ) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-            }
-        }
-
-        return sb.toString();
+        return URI.create(urlString);
     }
 
     /**
-     * 使用 HtmlUnit 進行實際的 Google Search，並解析載入後的 HTML。
-     * @param query 關鍵字
-     * @return 回傳在 class="y6Uyqe" 區塊內所有文字，逐行裝在 List<String>
+     * 非同步呼叫一次 API，回傳該頁的 JSON 字串；取消回傳的 future 會一併中止 HTTP 請求
      */
-    public List<String> fetchGoogleResultText(String query) {
+    private CompletableFuture<String> fetchContentAsync(String query, int start) {
+        HttpRequest request;
         try {
-            // 建立 FetchGoogle 物件 (若您有使用 Spring 管理，可改用 @Autowired 來注入)
-            FetchGoogle fetchGoogle = new FetchGoogle();
-            // 呼叫 fetchGoogle.getrelate(...) 並回傳取得的 List<String>
-            return fetchGoogle.getrelate(query);
+            request = HttpRequest.newBuilder(buildUri(query, start))
+                    .timeout(READ_TIMEOUT)
+                    .GET()
+                    .build();
         } catch (IOException e) {
-            // 可視需求做更進一步處理或丟出自訂例外
-            e.printStackTrace();
-            return Collections.emptyList();
+            return CompletableFuture.failedFuture(e);
         }
+
+        CompletableFuture<HttpResponse<String>> exchange =
+                HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        CompletableFuture<String> content = exchange.thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new CompletionException(
+                        new IOException("Custom Search API 回傳非 200 狀態碼: " + response.statusCode()));
+            }
+            return response.body();
+        });
+        // 取消衍生的 future 不會影響 HttpClient，要取消 sendAsync 回傳的那個 (JDK 16+ 會中止該請求)
+        content.whenComplete((json, e) -> {
+            if (content.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return content;
     }
 
     /**
-     * 對外提供的搜尋方法：回傳 Map<String, String>，對應 title -> url
-     * 最多抓取 50 筆(5 頁)結果。
+     * 解析一頁 API 回應，回傳 (title + snippet) -> url
      */
-    public Map<String, String> query() throws IOException {
-        Map<String, String> resultMap = new LinkedHashMap<>();
-
-        // 最多 5 次呼叫，每次 10 筆
-        int currentStart = 1; // 第一次從1開始
-        int totalFetched = 0;
+    private static Map<String, String> parseItems(String jsonString) {
+        Map<String, String> pageResults = new LinkedHashMap<>();
 
-        for (int pageIndex = 0; pageIndex < 5; pageIndex++) {
-            String jsonString = fetchContent(queryKeywords, currentStart);
+        JsonObject jsonObject = new Gson().fromJson(jsonString, JsonObject.class);
+        JsonArray items = jsonObject.getAsJsonArray("items");
+        if (items == null) {
+            return pageResults;
+        }
 
-            // 解析 JSON
-            JsonObject jsonObject = new Gson().fromJson(jsonString, JsonObject.class);
-            JsonArray items = jsonObject.getAsJsonArray("items");
+        for (int i = 0; i < items.size(); i++) {
+            JsonObject item = items.get(i).getAsJsonObject();
+            String title = item.has("title") ? item.get("title").getAsString() : "";
+            String link = item.has("link") ? item.get("link").getAsString() : "";
+            String snippet = item.has("snippet") ? item.get("snippet").getAsString() : "";
+            String combine = title + "DSPROJECT/x01" + snippet;
 
-            // 如果本次沒有拿到結果，就提早結束
-            if (items == null || items.size() == 0) {
-                break;
+            if (!title.isEmpty() && !link.isEmpty()) {
+                pageResults.put(combine, link);
             }
+        }
+        return pageResults;
+    }
 
-            // 處理本次取得的 items
-            for (int i = 0; i < items.size(); i++) {
-                JsonObject item = items.get(i).getAsJsonObject();
-                String title = item.has("title") ? item.get("title").getAsString() : "";
-                String link = item.has("link") ? item.get("link").getAsString() : "";
-                String snippet = item.has("snippet") ? item.get("snippet").getAsString() : "";
-                String combine = title + "DSPROJECT/x01" + snippet;
-
-                if (!title.isEmpty() && !link.isEmpty()) {
-                    resultMap.put(combine, link);
-                    totalFetched++;
+    /**
+     * 同時送出全部 5 頁 (start=1,11,21,...) 的 API 請求，回傳依排名順序排列的 5 個 future。
+     *
+     * - 第 k 頁會等前面各頁都回來後才完成，確保結果依排名順序交付
+     * - 若某一頁沒有結果 (或第 2 頁之後失敗)，之後的頁一律視為空頁，並取消其請求
+     * - 第 1 頁失敗則整個查詢失敗 (與原本循序呼叫的行為相同)
+     *
+     * 呼叫端可以在第 1 頁回來時就開始抓網頁，不必等 50 筆全部到齊。
+     */
+    public List<CompletableFuture<Map<String, String>>> queryPagesAsync() {
+        int pageCount = MAX_RESULTS / PAGE_SIZE;
+
+        // requests：實際的 API 請求 (取消它才會中止 HTTP)；raw：解析後的結果
+        List<CompletableFuture<String>> requests = new ArrayList<>();
+        List<CompletableFuture<Map<String, String>>> raw = new ArrayList<>();
+        for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+            int start = 1 + pageIndex * PAGE_SIZE;
+            int page = pageIndex + 1;
+            long startNanos = System.nanoTime();
+            CompletableFuture<String> request = fetchContentAsync(queryKeywords, start);
+            requests.add(request);
+            raw.add(request
+                    .whenComplete((json, e) -> searchMetrics.recordGooglePage(page, e, startNanos))
+                    .thenApply(GoogleQuery::parseItems));
+        }
+
+        List<CompletableFuture<Map<String, String>>> ordered = new ArrayList<>();
+        // 前面各頁是否都有結果 (決定要不要繼續用下一頁)
+        CompletableFuture<Boolean> continuing = CompletableFuture.completedFuture(true);
+        for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+            CompletableFuture<Map<String, String>> page = raw.get(pageIndex);
+            CompletableFuture<String> request = requests.get(pageIndex);
+            boolean firstPage = pageIndex == 0;
+
+            CompletableFuture<Map<String, String>> effective = continuing.thenCompose(ok -> {
+                if (!ok) {
+                    // 前面已經沒有結果，提早結束 (中止這一頁的 API 請求，不再消耗配額)
+                    request.cancel(true);
+                    return CompletableFuture.completedFuture(Collections.<String, String>emptyMap());
                 }
+                return firstPage ? page : page.exceptionally(e -> Collections.emptyMap());
+            });
+            ordered.add(effective);
+            continuing = effective.thenApply(results -> !results.isEmpty());
+        }
 
-                // 若已累積到 50 筆就停止
-                if (totalFetched >= MAX_RESULTS) {
-                    break;
+        // 呼叫端取消 (例如 deadline 到) 時，一併取消還在進行的 API 請求；
+        // 取消第 k 頁會讓之後各頁以例外完成 (不是 CancellationException)，這些頁的請求同樣用不到
+        for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+            CompletableFuture<String> request = requests.get(pageIndex);
+            ordered.get(pageIndex).whenComplete((results, e) -> {
+                if (e != null) {
+                    request.cancel(true);
                 }
-            }
+            });
+        }
+        return ordered;
+    }
 
-            // 若已累積到 50 筆就停止，不再呼叫下一頁
-            if (totalFetched >= MAX_RESULTS) {
-                break;
+    /**
+     * 對外提供的搜尋方法：回傳 Map<String, String>，對應 title -> url
+     * 最多抓取 50 筆(5 頁)結果；5 頁同時送出，依排名順序合併。
+     */
+    public Map<String, String> query() throws IOException {
+        Map<String, String> resultMap = new LinkedHashMap<>();
+        try {
+            for (CompletableFuture<Map<String, String>> page : queryPagesAsync()) {
+                Map<String, String> pageResults = page.get();
+                // 如果本頁沒有拿到結果，就提早結束
+                if (pageResults.isEmpty()) {
+                    break;
+                }
+                for (Map.Entry<String, String> entry : pageResults.entrySet()) {
+                    resultMap.put(entry.getKey(), entry.getValue());
+                    // 若已累積到 50 筆就停止
+                    if (resultMap.size() >= MAX_RESULTS) {
+                        return resultMap;
+                    }
+                }
             }
-
-            // 更新下一頁的起始值 (預設一次返回10筆)
-            currentStart += PAGE_SIZE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Custom Search API 查詢被中斷", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
         }
-
         return resultMap;
     }
-}
\ No newline at end of file
+}
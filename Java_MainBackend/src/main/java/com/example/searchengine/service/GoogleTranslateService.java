@@ -7,6 +7,7 @@ import java.net.URL;
 import java.util.Scanner;
 import org.json.JSONObject;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -16,16 +17,20 @@ public class GoogleTranslateService {
     private static final String TRANSLATE_URL = "https://translation.googleapis.com/language/translate/v2";
     private static final String DETECT_URL = "https://translation.googleapis.com/language/translate/v2/detect";
 
+    // 每個連線的 connect / read timeout：KeywordExtractionEngine 的 orTimeout 只會讓等待的一方放棄，
+    // 卡住的連線仍佔著 FetchExecutor 的執行緒，要靠這裡讓呼叫本身結束
+    private final int timeoutMs;
+
+    public GoogleTranslateService(@Value("${extraction.translate-timeout-ms:1500}") int timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
     public String detectLanguage(String text) throws IOException {
         if (API_KEY == null || API_KEY.isEmpty()) {
             throw new IllegalStateException("Google Translate API key is not set.");
         }
 
-        URL url = new URL(DETECT_URL + "?key=" + API_KEY);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setDoOutput(true);
+        HttpURLConnection connection = openConnection(DETECT_URL);
 
         String requestBody = new JSONObject()
                 .put("q", text)
@@ -61,11 +66,7 @@ public class GoogleTranslateService {
         }
 
         // Step 3: Translate to Traditional Chinese
-        URL url = new URL(TRANSLATE_URL + "?key=" + API_KEY);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setDoOutput(true);
+        HttpURLConnection connection = openConnection(TRANSLATE_URL);
 
         String requestBody = new JSONObject()
                 .put("q", text)
@@ -87,4 +88,15 @@ public class GoogleTranslateService {
                 .getJSONObject(0)
                 .getString("translatedText");
     }
+
+    private HttpURLConnection openConnection(String endpoint) throws IOException {
+        URL url = new URL(endpoint + "?key=" + API_KEY);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        return connection;
+    }
 }
@@ -0,0 +1,70 @@
+package com.example.searchengine.service;
+
+import com.example.searchengine.model.ProcessedPage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 全域共用的網頁快取 (SearchController 與 KeywordCounterEngine 共用同一份)。
+ * 存放的是解析後的 ProcessedPage (body 文字 + 外連)，而非原始 HTML。
+ *
+ * - 以位元組估算大小，超過上限時依 W-TinyLFU 淘汰
+ * - 寫入後超過 TTL 自動過期
+ * - 記錄 hit / miss / eviction 次數
+ */
+@Component
+public class PageCache {
+
+    private final Cache<String, ProcessedPage> cache;
+
+    public PageCache(
+            @Value("${pagecache.max-bytes:67108864}") long maxBytes,
+            @Value("${pagecache.ttl-minutes:30}") long ttlMinutes
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String url, ProcessedPage page) -> weigh(url, page))
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 取得快取中的頁面，沒有則回傳 null
+     */
+    public ProcessedPage get(String url) {
+        return cache.getIfPresent(url);
+    }
+
+    public void put(String url, ProcessedPage page) {
+        cache.put(url, page);
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 目前快取的頁數 (估計值)
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * hit / miss / eviction 等統計
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static int weigh(String url, ProcessedPage page) {
+        long bytes = 2L * url.length() + page.estimatedBytes();
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+}
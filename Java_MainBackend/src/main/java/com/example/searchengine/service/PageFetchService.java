@@ -0,0 +1,407 @@
+package com.example.searchengine.service;
+
+import com.example.searchengine.model.ProcessedPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 統一的網頁抓取服務 (取代 SearchController / KeywordCounterEngine 各自的 HttpURLConnection 版本)。
+ *
+ * - 使用 java.net.http.HttpClient：連線池 (keep-alive)、HTTP/2、非同步
+ * - 每個 host 同時最多 fetch.per-host-limit 個請求，其餘排隊
+ * - 連線逾時與整體請求逾時可設定
+ * - 回應邊下載邊解析 (StreamingPageSubscriber：依 header / meta 判斷編碼、略過 script / style、可設上限)，
+ *   解析結果存進共用的 PageCache
+ * - 同一個 URL 同時只會有一個下載 (single-flight)，其它呼叫端等同一個結果
+ * - 每次下載的延遲依結果 (狀態碼 / timeout / error / cancelled / skipped) 記錄在 search.page.fetch
+ */
+@Component
+public class PageFetchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageFetchService.class);
+
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 " +
+            "(KHTML, like Gecko) Chrome/117.0.0.0 Safari/537.36";
+
+    private final PageCache pageCache;
+    private final SearchMetrics searchMetrics;
+    private final HttpClient httpClient;
+    // HttpClient 的執行緒 (回應處理)；排隊中的請求也在這裡送出
+    private final ExecutorService httpExecutor;
+    private final Duration requestTimeout;
+    private final int perHostLimit;
+    private final long maxBodyBytes;
+    private final int maxTextChars;
+
+    // 每個 host 的排隊狀態
+    private final Map<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
+
+    // 正在下載中的 URL (root 頁與子頁共用)
+    private final Map<String, InFlight> inFlightFetches = new ConcurrentHashMap<>();
+
+    public PageFetchService(
+            PageCache pageCache,
+            SearchMetrics searchMetrics,
+            @Value("${fetch.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${fetch.request-timeout-ms:4000}") long requestTimeoutMs,
+            @Value("${fetch.per-host-limit:6}") int perHostLimit,
+            @Value("${fetch.max-body-bytes:0}") long maxBodyBytes,
+            @Value("${fetch.max-text-chars:0}") int maxTextChars
+    ) {
+        this.pageCache = pageCache;
+        this.searchMetrics = searchMetrics;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.perHostLimit = perHostLimit;
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxTextChars = maxTextChars;
+        AtomicInteger threadCount = new AtomicInteger(0);
+        this.httpExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "page-fetch-http-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(httpExecutor)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpExecutor.shutdown();
+    }
+
+    /**
+     * 非同步抓取並解析網頁；失敗 (403 / 非 200 / 逾時 / 非 HTTP) 時回傳 ProcessedPage.EMPTY
+     */
+    public CompletableFuture<ProcessedPage> fetchAsync(String pageUrl) {
+        // 1. 檢查快取
+        ProcessedPage cached = pageCache.get(pageUrl);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // 2. 協定檢查
+        if (!pageUrl.startsWith("http://") && !pageUrl.startsWith("https://")) {
+            searchMetrics.recordPageFetch("skipped", System.nanoTime());
+            return CompletableFuture.completedFuture(ProcessedPage.EMPTY);
+        }
+
+        // 3. 同一個 URL 已在下載中就一起等，否則由這個呼叫端發起下載
+        while (true) {
+            InFlight flight = new InFlight(pageUrl);
+            InFlight existing = inFlightFetches.putIfAbsent(pageUrl, flight);
+            if (existing == null) {
+                flight.start();
+                existing = flight;
+            }
+            CompletableFuture<ProcessedPage> waiter = existing.attach();
+            if (waiter != null) {
+                return waiter;
+            }
+            // 該次下載的呼叫端已全部取消，換一個新的
+            inFlightFetches.remove(pageUrl, existing);
+        }
+    }
+
+    /**
+     * 實際下載一次 (由 InFlight 呼叫，同一 URL 同時只會有一個)
+     */
+    private CompletableFuture<ProcessedPage> download(String pageUrl) {
+        // 前一次下載可能剛好完成並已放進快取
+        ProcessedPage cached = pageCache.get(pageUrl);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(pageUrl))
+                    .timeout(requestTimeout)
+                    .header("User-Agent", USER_AGENT)
+                    .header("Referer", "https://www.google.com")
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            logger.debug("Invalid URL: {}", pageUrl);
+            searchMetrics.recordPageFetch("skipped", System.nanoTime());
+            return CompletableFuture.completedFuture(ProcessedPage.EMPTY);
+        }
+
+        // 4. 依 host 排隊後送出 (延遲從實際送出時開始算，不含排隊)
+        String host = request.uri().getHost() == null ? "" : request.uri().getHost();
+        HttpResponse.BodyHandler<ProcessedPage> bodyHandler =
+                StreamingPageSubscriber.handler(pageUrl, maxBodyBytes, maxTextChars, searchMetrics);
+        AtomicLong sentAt = new AtomicLong(System.nanoTime());
+        CompletableFuture<HttpResponse<ProcessedPage>> exchange =
+                submitToHost(host, () -> {
+                    sentAt.set(System.nanoTime());
+                    return httpClient.sendAsync(request, bodyHandler);
+                });
+        CompletableFuture<ProcessedPage> page = exchange
+                .thenApply(response -> {
+                    searchMetrics.recordPageFetch(String.valueOf(response.statusCode()), sentAt.get());
+                    return toProcessedPage(pageUrl, response);
+                })
+                .exceptionally(e -> {
+                    logger.debug("Error fetching page: {} ({})", pageUrl, e.toString());
+                    searchMetrics.recordPageFetch(SearchMetrics.outcomeOf(e), sentAt.get());
+                    return ProcessedPage.EMPTY;
+                });
+
+        // 取消 (所有呼叫端都超過 deadline) 時，一併取消排隊或中止進行中的 HTTP 連線
+        page.whenComplete((p, e) -> {
+            if (page.isCancelled()) {
+                searchMetrics.recordPageFetch("cancelled", sentAt.get());
+                exchange.cancel(true);
+            }
+        });
+        return page;
+    }
+
+    /**
+     * 同步版本：等待 fetchAsync 完成；等待中被中斷時會取消這次抓取
+     */
+    public ProcessedPage fetch(String pageUrl) throws InterruptedException {
+        CompletableFuture<ProcessedPage> future = fetchAsync(pageUrl);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException | CancellationException e) {
+            return ProcessedPage.EMPTY;
+        }
+    }
+
+    /**
+     * 目前有請求在飛或排隊的 host 數 (閒置的 HostQueue 會被移除)
+     */
+    int hostQueueCount() {
+        return hostQueues.size();
+    }
+
+    private ProcessedPage toProcessedPage(String pageUrl, HttpResponse<ProcessedPage> response) {
+        // 403 或其它非 200 => 空頁面
+        if (response.statusCode() != 200) {
+            return ProcessedPage.EMPTY;
+        }
+
+        // 5. 已在下載時解析完成，放進 Cache
+        ProcessedPage processedPage = response.body();
+        pageCache.put(pageUrl, processedPage);
+        return processedPage;
+    }
+
+    /**
+     * 拿到的 HostQueue 剛好閒置被移除時 (submit 回傳 null) 改用新建的那個
+     */
+    private <T> CompletableFuture<T> submitToHost(String host, Supplier<CompletableFuture<T>> task) {
+        while (true) {
+            CompletableFuture<T> result = hostQueues.computeIfAbsent(host, HostQueue::new).submit(task);
+            if (result != null) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * 同一個 URL 的一次下載，以及等待它的呼叫端。
+     * 每個呼叫端拿到自己的 future：單一呼叫端取消只會退出等待，
+     * 所有呼叫端都取消時才中止下載。
+     */
+    private final class InFlight {
+        private final String pageUrl;
+        private final CompletableFuture<ProcessedPage> shared = new CompletableFuture<>();
+        private CompletableFuture<ProcessedPage> download;
+        private int waiters = 0;
+        private boolean abandoned = false;
+
+        InFlight(String pageUrl) {
+            this.pageUrl = pageUrl;
+        }
+
+        void start() {
+            CompletableFuture<ProcessedPage> d = download(pageUrl);
+            boolean alreadyAbandoned;
+            synchronized (this) {
+                download = d;
+                alreadyAbandoned = abandoned;
+            }
+            if (alreadyAbandoned) {
+                // 下載指定之前 (已放進 inFlightFetches) 其它呼叫端就 attach 又取消了，detach 當時沒有可取消的下載
+                d.cancel(true);
+                return;
+            }
+            d.whenComplete((page, error) -> {
+                inFlightFetches.remove(pageUrl, this);
+                shared.complete(page != null ? page : ProcessedPage.EMPTY);
+            });
+        }
+
+        /**
+         * 加入等待；這次下載已被放棄時回傳 null
+         */
+        synchronized CompletableFuture<ProcessedPage> attach() {
+            if (abandoned) {
+                return null;
+            }
+            waiters++;
+            CompletableFuture<ProcessedPage> waiter = new CompletableFuture<>();
+            shared.whenComplete((page, error) -> waiter.complete(page));
+            waiter.whenComplete((page, error) -> {
+                if (waiter.isCancelled()) {
+                    detach();
+                }
+            });
+            return waiter;
+        }
+
+        private void detach() {
+            CompletableFuture<ProcessedPage> toCancel = null;
+            synchronized (this) {
+                waiters--;
+                if (waiters == 0 && !shared.isDone()) {
+                    abandoned = true;
+                    toCancel = download;
+                }
+            }
+            if (toCancel != null) {
+                inFlightFetches.remove(pageUrl, this);
+                toCancel.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 單一 host 的非同步限流：同時最多 perHostLimit 個請求在飛，其餘排隊，
+     * 前一個完成後才送出下一個 (不佔用任何執行緒等待)。
+     * 閒置時在自己的 lock 內從 hostQueues 移除並標記 retired，之後拿到它的 submit 會重新取得新的 queue。
+     */
+    private final class HostQueue {
+        private final String host;
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        private int active = 0;
+        private boolean retired = false;
+
+        HostQueue(String host) {
+            this.host = host;
+        }
+
+        /**
+         * @return 這個 queue 已被移除時回傳 null
+         */
+        <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            AtomicReference<CompletableFuture<T>> started = new AtomicReference<>();
+            Runnable start = () -> {
+                if (result.isDone()) {
+                    // 排隊期間就被取消
+                    release();
+                    return;
+                }
+                CompletableFuture<T> inner;
+                try {
+                    inner = task.get();
+                } catch (RuntimeException e) {
+                    inner = CompletableFuture.failedFuture(e);
+                }
+                started.set(inner);
+                if (result.isCancelled()) {
+                    inner.cancel(true);
+                }
+                inner.whenComplete((value, error) -> {
+                    release();
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            };
+
+            boolean runNow;
+            synchronized (this) {
+                if (retired) {
+                    return null;
+                }
+                runNow = active < perHostLimit;
+                if (runNow) {
+                    active++;
+                } else {
+                    pending.addLast(start);
+                }
+            }
+            if (runNow) {
+                start.run();
+            }
+
+            // 取消：還在排隊就移出佇列，已送出就中止 HTTP 請求 (JDK 16+ 會關閉該 exchange)
+            result.whenComplete((value, error) -> {
+                if (!result.isCancelled()) {
+                    return;
+                }
+                boolean removed;
+                synchronized (this) {
+                    removed = pending.remove(start);
+                }
+                CompletableFuture<T> inner = started.get();
+                if (!removed && inner != null) {
+                    inner.cancel(true);
+                }
+            });
+            return result;
+        }
+
+        private void release() {
+            Runnable next;
+            synchronized (this) {
+                next = pending.pollFirst();
+                if (next == null) {
+                    active--;
+                    if (active == 0) {
+                        // 閒置的 host 不必一直佔著 map；在 lock 內移除，不會有請求排進已移除的 queue
+                        retired = true;
+                        hostQueues.compute(host, (h, q) -> q == this ? null : q);
+                    }
+                }
+            }
+            if (next != null) {
+                // 不在 release 裡直接執行：送出時就同步失敗的請求會一路遞迴到整個佇列。
+                // 交給 HttpClient 自己的 executor (不用 common pool，也不佔 FetchExecutor)
+                try {
+                    httpExecutor.execute(next);
+                } catch (RejectedExecutionException e) {
+                    next.run(); // 關閉中
+                }
+            }
+        }
+    }
+}
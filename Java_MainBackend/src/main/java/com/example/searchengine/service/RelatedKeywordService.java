@@ -0,0 +1,72 @@
+package com.example.searchengine.service;
+
+import com.example.searchengine.model.FetchGoogle;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RELATED KEYWORDS (Python /fetch 服務抓 Google 頁面最底下的相關搜尋)。
+ *
+ * 只用於顯示、不影響排名，所以不放在搜尋的關鍵路徑上：
+ * - 非同步送出，與 Custom Search / 網頁抓取同時進行
+ * - 有自己的 timeout (related.timeout-ms)，逾時或失敗就回傳空清單
+ * - 依查詢字串快取 (related.cache.*)；失敗、逾時的結果不快取，同時進來的相同查詢只送一次
+ */
+@Component
+public class RelatedKeywordService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelatedKeywordService.class);
+
+    private final FetchGoogle fetchGoogle;
+    private final long timeoutMs;
+    private final AsyncCache<String, List<String>> cache;
+
+    public RelatedKeywordService(
+            FetchGoogle fetchGoogle,
+            @Value("${related.timeout-ms:3000}") long timeoutMs,
+            @Value("${related.cache.max-entries:1000}") long maxEntries,
+            @Value("${related.cache.ttl-minutes:60}") long ttlMinutes
+    ) {
+        this.fetchGoogle = fetchGoogle;
+        this.timeoutMs = timeoutMs;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .buildAsync();
+    }
+
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    /**
+     * 開始抓取 (或取得快取) 並立即回傳；future 一定會在 timeout 內以結果或空清單完成，不會失敗
+     */
+    public CompletableFuture<List<String>> fetchAsync(String query) {
+        // orTimeout 直接加在 HTTP 請求的 future 上，逾時會一併中止請求；
+        // 失敗時以 null 完成，Caffeine 會直接移除該筆 (不快取失敗結果)
+        return cache.get(query, (key, executor) -> fetchGoogle.getrelateAsync(key)
+                        .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                        .thenApply(keywords -> keywords == null ? Collections.<String>emptyList() : List.copyOf(keywords))
+                        .exceptionally(e -> {
+                            logger.warn("Related keywords unavailable for '{}': {}", key, e.toString());
+                            return null;
+                        }))
+                .thenApply(keywords -> keywords == null ? Collections.<String>emptyList() : keywords);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.searchengine.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 搜尋流程各階段的延遲 (Micrometer Timer，於 /actuator/prometheus 輸出)：
+ *
+ * - search.request{endpoint, outcome}：整個請求
+ * - search.extraction{stage=translate|ckip|classify, outcome}：關鍵字擷取各階段
+ * - search.google.page{page, outcome}：每一頁 Custom Search
+ * - search.page.fetch{outcome=200|403|...|timeout|error|cancelled|skipped}：每次網頁下載
+ * - search.page.parse：每頁的 HTML 解析時間 (邊下載邊解析，只計解析本身)
+ * - search.page.score：每頁的關鍵字計數 + 計分
+ *
+ * 快取與執行緒池的 gauge 見 SearchMetricsBinder。
+ */
+@Component
+public class SearchMetrics {
+
+    /**
+     * 不輸出任何數據 (不經 Spring 建立的物件使用)
+     */
+    public static final SearchMetrics NOOP = new SearchMetrics(new CompositeMeterRegistry());
+
+    private final MeterRegistry registry;
+    private final Timer pageParse;
+    private final Timer pageScore;
+
+    public SearchMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.pageParse = Timer.builder("search.page.parse")
+                .description("HTML parsing time per fetched page")
+                .register(registry);
+        this.pageScore = Timer.builder("search.page.score")
+                .description("Keyword counting and scoring time per page")
+                .register(registry);
+    }
+
+    public void recordRequest(String endpoint, String outcome, long startNanos) {
+        timer("search.request", "endpoint", endpoint, "outcome", outcome).record(elapsed(startNanos), TimeUnit.NANOSECONDS);
+    }
+
+    public void recordExtraction(String stage, Throwable error, long startNanos) {
+        recordExtraction(stage, outcomeOf(error), startNanos);
+    }
+
+    public void recordExtraction(String stage, String outcome, long startNanos) {
+        timer("search.extraction", "stage", stage, "outcome", outcome).record(elapsed(startNanos), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param page 第幾頁 (1-based)
+     */
+    public void recordGooglePage(int page, Throwable error, long startNanos) {
+        timer("search.google.page", "page", String.valueOf(page), "outcome", outcomeOf(error))
+                .record(elapsed(startNanos), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param outcome HTTP 狀態碼 (例如 "200"、"403") 或 timeout / error / cancelled / skipped
+     */
+    public void recordPageFetch(String outcome, long startNanos) {
+        timer("search.page.fetch", "outcome", outcome).record(elapsed(startNanos), TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPageParse(long nanos) {
+        pageParse.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPageScore(long startNanos) {
+        pageScore.record(elapsed(startNanos), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * ok / timeout / cancelled / error
+     */
+    public static String outcomeOf(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause == null) {
+            return "ok";
+        }
+        if (cause instanceof TimeoutException || cause instanceof HttpTimeoutException) {
+            return "timeout";
+        }
+        if (cause instanceof CancellationException) {
+            return "cancelled";
+        }
+        return "error";
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name).tags(tags).register(registry);
+    }
+
+    private static long elapsed(long startNanos) {
+        return System.nanoTime() - startNanos;
+    }
+}
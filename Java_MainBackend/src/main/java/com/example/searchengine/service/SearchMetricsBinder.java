@@ -0,0 +1,83 @@
+package com.example.searchengine.service;
+
+import com.example.searchengine.model.CKIPTransformer;
+import com.example.searchengine.model.ClassificationCache;
+import com.example.searchengine.model.ClassificationModel;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 快取與執行緒池的 gauge (Spring Boot 會自動把 MeterBinder 綁到 MeterRegistry)：
+ *
+ * - search.cache.size / search.cache.hit.ratio / search.cache.gets{result=hit|miss} / search.cache.evictions，
+ *   cache 標籤：page、search-result、classification、ckip、related
+ * - search.executor.queued / search.executor.active / search.executor.max：共用的 FetchExecutor
+ */
+@Component
+public class SearchMetricsBinder implements MeterBinder {
+
+    private final PageCache pageCache;
+    private final SearchResultCache searchResultCache;
+    private final ClassificationModel classificationModel;
+    private final CKIPTransformer ckipTransformer;
+    private final RelatedKeywordService relatedKeywordService;
+    private final FetchExecutor fetchExecutor;
+
+    public SearchMetricsBinder(PageCache pageCache, SearchResultCache searchResultCache,
+                               ClassificationModel classificationModel, CKIPTransformer ckipTransformer,
+                               RelatedKeywordService relatedKeywordService, FetchExecutor fetchExecutor) {
+        this.pageCache = pageCache;
+        this.searchResultCache = searchResultCache;
+        this.classificationModel = classificationModel;
+        this.ckipTransformer = ckipTransformer;
+        this.relatedKeywordService = relatedKeywordService;
+        this.fetchExecutor = fetchExecutor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // gauge 只弱參照狀態物件，所以傳入快取的擁有者 (Spring bean) 而不是 lambda
+        bindCache(registry, "page", pageCache, PageCache::size, PageCache::stats);
+        bindCache(registry, "search-result", searchResultCache, SearchResultCache::size, SearchResultCache::stats);
+        bindCache(registry, "classification", classificationModel.getClassificationCache(),
+                ClassificationCache::size, ClassificationCache::stats);
+        bindCache(registry, "ckip", ckipTransformer, CKIPTransformer::cacheSize, CKIPTransformer::cacheStats);
+        bindCache(registry, "related", relatedKeywordService, RelatedKeywordService::size, RelatedKeywordService::stats);
+
+        Gauge.builder("search.executor.queued", fetchExecutor, FetchExecutor::getQueueDepth)
+                .description("Tasks waiting for a fetch executor slot")
+                .register(registry);
+        Gauge.builder("search.executor.active", fetchExecutor, FetchExecutor::getActiveCount)
+                .description("Tasks currently running on the fetch executor")
+                .register(registry);
+        Gauge.builder("search.executor.max", fetchExecutor, FetchExecutor::getMaxConcurrency)
+                .description("Maximum concurrent fetch executor tasks")
+                .register(registry);
+    }
+
+    private static <T> void bindCache(MeterRegistry registry, String name, T owner,
+                                      ToLongFunction<T> size, Function<T, CacheStats> stats) {
+        Gauge.builder("search.cache.size", owner, o -> size.applyAsLong(o))
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("search.cache.hit.ratio", owner, o -> stats.apply(o).hitRate())
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("search.cache.gets", owner, o -> stats.apply(o).hitCount())
+                .tags("cache", name, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("search.cache.gets", owner, o -> stats.apply(o).missCount())
+                .tags("cache", name, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("search.cache.evictions", owner, o -> stats.apply(o).evictionCount())
+                .tag("cache", name)
+                .register(registry);
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.searchengine.service;
+
+import com.example.searchengine.engine.KeywordMatcher;
+import com.example.searchengine.engine.RootPageScorer;
+import com.example.searchengine.model.Keyword;
+import com.example.searchengine.model.RootPageResult;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 搜尋結果快取：以「正規化後的關鍵字集合」為 key，存放最終排序好的 RootPageResult 清單。
+ *
+ * - 同一個 key 同時有多個請求時只會計算一次；每個請求拿到自己的 future，
+ *   單一請求取消 (例如串流的 client 斷線) 只會退出等待，所有等待者都取消時才中止計算
+ * - 超過 refresh-after 的結果仍會立即回傳，同時在背景重新計算 (stale-while-revalidate)
+ * - 完整結果保留 ttl；含有 cutOff (超過 deadline) 的部分結果只保留很短時間
+ * - 以筆數限制大小
+ */
+@Component
+public class SearchResultCache {
+
+    private final AsyncLoadingCache<QueryKey, List<RootPageResult>> cache;
+    // 計算中 (快取裡的) future -> 等待它的呼叫端 (以 future 本身為 key，同一 key 重新計算時不會混在一起)
+    private final Map<CompletableFuture<List<RootPageResult>>, Waiters> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SearchResultCache(
+            RootPageScorer rootPageScorer,
+            @Value("${search.result-cache.max-entries:500}") long maxEntries,
+            @Value("${search.result-cache.ttl-seconds:600}") long ttlSeconds,
+            @Value("${search.result-cache.partial-ttl-seconds:15}") long partialTtlSeconds,
+            @Value("${search.result-cache.refresh-after-seconds:120}") long refreshAfterSeconds,
+            @Value("${search.deadline-ms:5000}") long refreshDeadlineMs
+    ) {
+        this(rootPageScorer, maxEntries, ttlSeconds, partialTtlSeconds, refreshAfterSeconds, refreshDeadlineMs,
+                Ticker.systemTicker());
+    }
+
+    /**
+     * 可指定時間來源 (測試用)
+     */
+    SearchResultCache(RootPageScorer rootPageScorer, long maxEntries, long ttlSeconds, long partialTtlSeconds,
+                      long refreshAfterSeconds, long refreshDeadlineMs, Ticker ticker) {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        long partialTtlNanos = TimeUnit.SECONDS.toNanos(partialTtlSeconds);
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<QueryKey, List<RootPageResult>>() {
+                    @Override
+                    public long expireAfterCreate(QueryKey key, List<RootPageResult> results, long currentTime) {
+                        return isPartial(results) ? partialTtlNanos : ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(QueryKey key, List<RootPageResult> results, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, results, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(QueryKey key, List<RootPageResult> results, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .refreshAfterWrite(refreshAfterSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .recordStats()
+                // 背景 refresh 時使用預設的 deadline 重新搜尋
+                .buildAsync((key, executor) -> rootPageScorer.search(
+                        key.getGoogleQuery(),
+                        KeywordMatcher.compile(key.getKeywords()),
+                        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(refreshDeadlineMs),
+                        null));
+    }
+
+    /**
+     * 取得結果；沒有快取時用 compute 計算 (同 key 的並行請求共用同一次計算，
+     * compute 只會由第一個請求呼叫，例如串流的逐頁 callback 只有它收得到)。
+     *
+     * 回傳的 future 一定是這個呼叫端自己的 (不會是快取裡的那個)，可以取消：只會退出等待，
+     * 所有等待者都取消時才移出快取並取消 compute 回傳的 future
+     */
+    public CompletableFuture<List<RootPageResult>> get(QueryKey key,
+                                                       Function<QueryKey, CompletableFuture<List<RootPageResult>>> compute) {
+        while (true) {
+            CompletableFuture<List<RootPageResult>> shared = cache.get(key, (k, executor) -> {
+                Waiters waiters = new Waiters(k, compute.apply(k));
+                inFlight.put(waiters.shared, waiters);
+                waiters.start();
+                return waiters.shared;
+            });
+            Waiters waiters = inFlight.get(shared);
+            if (waiters == null) {
+                // 已完成 (或是背景 refresh 的結果)；給呼叫端副本，取消它不會影響快取裡的 future
+                return shared.copy();
+            }
+            CompletableFuture<List<RootPageResult>> waiter = waiters.attach();
+            if (waiter != null) {
+                return waiter;
+            }
+            // 該次計算的等待者已全部取消，換一個新的
+            cache.asMap().remove(key, shared);
+        }
+    }
+
+    /**
+     * 快取裡 (含計算中) 是否已有送 Google 時用這個查詢字串的結果。
+     * 關鍵字權重確定前還建不出 QueryKey，用來決定要不要先送出 Custom Search (最多掃 max-entries 筆 key)
+     */
+    public boolean containsGoogleQuery(String googleQuery) {
+        for (QueryKey key : cache.asMap().keySet()) {
+            if (key.getGoogleQuery().equals(googleQuery)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    private static boolean isPartial(List<RootPageResult> results) {
+        return results.stream().anyMatch(RootPageResult::isCutOff);
+    }
+
+    /**
+     * 一次計算以及等待它的呼叫端 (同 PageFetchService 的單一下載)。
+     * 快取裡放的是 shared (由 computation 轉交結果)：放棄時先移出快取再只取消 computation，
+     * shared 不會以取消結束 (Caffeine 會把失敗的載入當成錯誤記 log)
+     */
+    private final class Waiters {
+        private final QueryKey key;
+        private final CompletableFuture<List<RootPageResult>> computation;
+        private final CompletableFuture<List<RootPageResult>> shared = new CompletableFuture<>();
+        private int count = 0;
+        private boolean abandoned = false;
+
+        Waiters(QueryKey key, CompletableFuture<List<RootPageResult>> computation) {
+            this.key = key;
+            this.computation = computation;
+        }
+
+        void start() {
+            computation.whenComplete((results, error) -> {
+                synchronized (this) {
+                    if (abandoned) {
+                        return;
+                    }
+                }
+                // 先完成 shared 再移出 inFlight：之間進來的 get() 仍會 attach，不會拿到 shared 本身
+                if (error != null) {
+                    shared.completeExceptionally(error);
+                } else {
+                    shared.complete(results);
+                }
+                inFlight.remove(shared, this);
+            });
+        }
+
+        /**
+         * 加入等待；這次計算已被放棄時回傳 null
+         */
+        synchronized CompletableFuture<List<RootPageResult>> attach() {
+            if (abandoned) {
+                return null;
+            }
+            count++;
+            CompletableFuture<List<RootPageResult>> waiter = new CompletableFuture<>();
+            shared.whenComplete((results, error) -> {
+                if (error != null) {
+                    waiter.completeExceptionally(error);
+                } else {
+                    waiter.complete(results);
+                }
+            });
+            waiter.whenComplete((results, error) -> {
+                if (waiter.isCancelled()) {
+                    detach();
+                }
+            });
+            return waiter;
+        }
+
+        private void detach() {
+            synchronized (this) {
+                count--;
+                if (count > 0 || shared.isDone()) {
+                    return;
+                }
+                abandoned = true;
+            }
+            inFlight.remove(shared, this);
+            cache.asMap().remove(key, shared);
+            computation.cancel(true);
+        }
+    }
+
+    /**
+     * 快取 key：關鍵字 (小寫、去空白、依字排序，含權重) + 送 Google 時附加的字串。
+     * 同一組關鍵字不論順序都會命中同一筆快取。
+     */
+    public static final class QueryKey {
+        private final String normalized;
+        private final List<Keyword> keywords;
+        private final String googleQuery;
+
+        private QueryKey(String normalized, List<Keyword> keywords, String googleQuery) {
+            this.normalized = normalized;
+            this.keywords = keywords;
+            this.googleQuery = googleQuery;
+        }
+
+        /**
+         * @param keywords    KeywordExtractionEngine.extractKeywords 回傳的關鍵字
+         * @param querySuffix 送 Google 時附加在關鍵字後面的字串 (例如 "夜市 美食")，沒有則為 ""
+         */
+        public static QueryKey of(List<Keyword> keywords, String querySuffix) {
+            String normalizedKeywords = keywords.stream()
+                    .map(k -> k.getWord().trim().toLowerCase(Locale.ROOT) + ":" + k.getWeight())
+                    .sorted()
+                    .collect(Collectors.joining(" "));
+            String combinedKeywords = keywords.stream()
+                    .map(Keyword::getWord)
+                    .collect(Collectors.joining(" "));
+            return new QueryKey(normalizedKeywords + "|" + querySuffix,
+                    Collections.unmodifiableList(new ArrayList<>(keywords)),
+                    combinedKeywords + querySuffix);
+        }
+
+        public List<Keyword> getKeywords() {
+            return keywords;
+        }
+
+        /**
+         * 實際送給 Google Custom Search 的查詢字串
+         */
+        public String getGoogleQuery() {
+            return googleQuery;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof QueryKey && normalized.equals(((QueryKey) o).normalized);
+        }
+
+        @Override
+        public int hashCode() {
+            return normalized.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return normalized;
+        }
+    }
+}
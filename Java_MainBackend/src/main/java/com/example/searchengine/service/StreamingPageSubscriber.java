@@ -0,0 +1,250 @@
+package com.example.searchengine.service;
+
+import com.example.searchengine.model.HtmlStreamParser;
+import com.example.searchengine.model.ProcessedPage;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 邊下載邊解析的 HttpClient BodySubscriber：不把整個回應讀成 byte[] / String，也不建 DOM。
+ *
+ * 1. 編碼：Content-Type 的 charset；沒有的話看開頭的 BOM 或前 1024 bytes 內的 meta charset；都沒有就用 UTF-8
+ * 2. 每收到一段 bytes 就解碼並餵給 HtmlStreamParser (略過 script / style 等)
+ * 3. 超過 maxBodyBytes 或文字已達 maxTextChars 就停止讀取並取消下載 (其餘內容不再傳輸)
+ *
+ * 解析本身花的時間 (不含等網路) 記錄在 search.page.parse。
+ */
+final class StreamingPageSubscriber implements HttpResponse.BodySubscriber<ProcessedPage> {
+
+    private static final int SNIFF_BYTES = 1024;
+
+    private static final Pattern HEADER_CHARSET = Pattern.compile("charset\\s*=\\s*\"?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta[^>]+charset\\s*=\\s*[\"']?\\s*([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private final CompletableFuture<ProcessedPage> result = new CompletableFuture<>();
+    private final HtmlStreamParser parser;
+    private final long maxBodyBytes;
+    private final SearchMetrics searchMetrics;
+
+    private Flow.Subscription subscription;
+    private CharsetDecoder decoder;          // null = 還在判斷編碼
+    private ByteArrayOutputStream sniffed = new ByteArrayOutputStream();
+    private ByteBuffer leftover = ByteBuffer.allocate(0);
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+    private long received;
+    private long parseNanos;
+    private boolean done;
+
+    private StreamingPageSubscriber(String pageUrl, Charset headerCharset, long maxBodyBytes, int maxTextChars,
+                                    SearchMetrics searchMetrics) {
+        this.parser = new HtmlStreamParser(pageUrl, maxTextChars);
+        this.maxBodyBytes = maxBodyBytes;
+        this.searchMetrics = searchMetrics;
+        if (headerCharset != null) {
+            this.decoder = newDecoder(headerCharset);
+            this.sniffed = null;
+        }
+    }
+
+    /**
+     * 200 才解析，其它狀態碼直接回傳 ProcessedPage.EMPTY
+     *
+     * @param maxBodyBytes 最多讀幾個 bytes (<= 0 表示不限制)
+     * @param maxTextChars 最多保留幾個文字 (<= 0 表示不限制)
+     */
+    static HttpResponse.BodyHandler<ProcessedPage> handler(String pageUrl, long maxBodyBytes, int maxTextChars,
+                                                          SearchMetrics searchMetrics) {
+        return responseInfo -> {
+            if (responseInfo.statusCode() != 200) {
+                return HttpResponse.BodySubscribers.replacing(ProcessedPage.EMPTY);
+            }
+            return new StreamingPageSubscriber(pageUrl, headerCharset(responseInfo.headers()), maxBodyBytes, maxTextChars,
+                    searchMetrics);
+        };
+    }
+
+    @Override
+    public CompletionStage<ProcessedPage> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        if (done) {
+            return;
+        }
+        try {
+            for (ByteBuffer buffer : buffers) {
+                if (maxBodyBytes > 0 && received + buffer.remaining() > maxBodyBytes) {
+                    buffer.limit(buffer.position() + (int) (maxBodyBytes - received));
+                }
+                received += buffer.remaining();
+                accept(buffer, false);
+                if (parser.isFull() || (maxBodyBytes > 0 && received >= maxBodyBytes)) {
+                    // 提早結束：不再讀取其餘內容
+                    finish();
+                    subscription.cancel();
+                    return;
+                }
+            }
+            subscription.request(1);
+        } catch (RuntimeException e) {
+            done = true;
+            subscription.cancel();
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        done = true;
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (!done) {
+            try {
+                finish();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void accept(ByteBuffer buffer, boolean endOfInput) {
+        if (decoder == null) {
+            // 先累積開頭的 bytes 判斷編碼
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            sniffed.write(bytes, 0, bytes.length);
+            if (sniffed.size() < SNIFF_BYTES && !endOfInput) {
+                return;
+            }
+            byte[] head = sniffed.toByteArray();
+            sniffed = null;
+            decoder = newDecoder(sniffCharset(head));
+            buffer = ByteBuffer.wrap(head);
+        }
+        decode(buffer, endOfInput);
+    }
+
+    private void decode(ByteBuffer buffer, boolean endOfInput) {
+        ByteBuffer input = buffer;
+        if (leftover.hasRemaining()) {
+            // 上一段結尾不完整的多位元組字元
+            input = ByteBuffer.allocate(leftover.remaining() + buffer.remaining());
+            input.put(leftover).put(buffer).flip();
+        }
+        while (true) {
+            CoderResult coderResult = decoder.decode(input, chars, endOfInput);
+            flushChars();
+            if (!coderResult.isOverflow()) {
+                break;
+            }
+        }
+        if (endOfInput) {
+            while (decoder.flush(chars).isOverflow()) {
+                flushChars();
+            }
+            flushChars();
+        }
+        leftover = input.hasRemaining() ? copyOf(input) : ByteBuffer.allocate(0);
+    }
+
+    private void flushChars() {
+        chars.flip();
+        long start = System.nanoTime();
+        parser.feed(chars);
+        parseNanos += System.nanoTime() - start;
+        chars.clear();
+    }
+
+    private void finish() {
+        done = true;
+        if (decoder == null) {
+            accept(ByteBuffer.allocate(0), true);
+        } else {
+            decode(ByteBuffer.allocate(0), true);
+        }
+        long start = System.nanoTime();
+        ProcessedPage page = parser.finish();
+        parseNanos += System.nanoTime() - start;
+        searchMetrics.recordPageParse(parseNanos);
+        result.complete(page);
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer).flip();
+        return copy;
+    }
+
+    /**
+     * Content-Type: text/html; charset=big5
+     */
+    static Charset headerCharset(HttpHeaders headers) {
+        return headers.firstValue("Content-Type")
+                .map(HEADER_CHARSET::matcher)
+                .filter(Matcher::find)
+                .map(m -> charsetOrNull(m.group(1)))
+                .orElse(null);
+    }
+
+    /**
+     * 由 BOM 或 <meta charset="..."> / <meta http-equiv content="...; charset=..."> 判斷；預設 UTF-8
+     */
+    static Charset sniffCharset(byte[] head) {
+        if (head.length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (head.length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (head.length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        // meta 標籤只會是 ASCII，用 ISO-8859-1 看就好
+        Matcher matcher = META_CHARSET.matcher(new String(head, 0, Math.min(head.length, SNIFF_BYTES), StandardCharsets.ISO_8859_1));
+        if (matcher.find()) {
+            Charset charset = charsetOrNull(matcher.group(1));
+            if (charset != null) {
+                return charset;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Charset charsetOrNull(String name) {
+        try {
+            return Charset.forName(name.trim().toLowerCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.searchengine.engine;
+
+import com.example.searchengine.model.Keyword;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * KeywordMatcher 的計數必須與原本逐一關鍵字的 Pattern.quote + CASE_INSENSITIVE 相同
+ */
+class KeywordMatcherTest {
+
+    @Test
+    void overlappingKeywordsAreCountedIndependently() {
+        assertSameAsRegex(List.of("夜市", "士林夜市", "林夜", "市"),
+                "士林夜市是台北最大的夜市，士林夜市夜市");
+        assertSameAsRegex(List.of("aa", "aaa", "a"), "aaaaaaa");
+        assertSameAsRegex(List.of("abab", "bab", "ab"), "abababab");
+        // 失敗連結要接到更短的後綴
+        assertSameAsRegex(List.of("he", "she", "his", "hers"), "ushers shehis");
+    }
+
+    @Test
+    void onlyAsciiLettersAreCaseInsensitive() {
+        assertSameAsRegex(List.of("Night Market", "MRT", "Café", "ÉCOLE"),
+                "night market NIGHT MARKET mrt Mrt café CAFÉ école ÉCOLE");
+        assertSameAsRegex(List.of("ＡＢＣ", "abc"), "ａｂｃ ＡＢＣ ABC");
+    }
+
+    @Test
+    void cjkAndSpecialCharactersAreMatchedLiterally() {
+        assertSameAsRegex(List.of("雞排", "大腸包小腸", "[夜市]", "a.b", "$100"),
+                "豪大雞排、大腸包小腸 [夜市] a.b axb $100 雞排雞排");
+        // surrogate pair
+        assertSameAsRegex(List.of("𠮷野家", "𠮷"), "𠮷野家 𠮷𠮷");
+    }
+
+    @Test
+    void duplicateAndEmptyKeywords() {
+        assertSameAsRegex(List.of("夜市", "夜市", ""), "夜市 夜市");
+        assertSameAsRegex(List.of("x"), "");
+    }
+
+    @Test
+    void countOccurrencesOnlyReturnsKeywordsThatOccur() {
+        Keyword market = new Keyword("夜市", 5);
+        Keyword missing = new Keyword("牛排", 3);
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of(market, missing));
+
+        assertThat(matcher.countOccurrences("夜市 夜市")).containsEntry(market, 2).doesNotContainKey(missing);
+    }
+
+    @Test
+    void randomTextsOverSmallAlphabetMatchRegex() {
+        Random random = new Random(42);
+        String alphabet = "aAb夜市";
+        for (int round = 0; round < 500; round++) {
+            List<String> words = new ArrayList<>();
+            for (int k = 1 + random.nextInt(5); k > 0; k--) {
+                words.add(randomString(random, alphabet, 1 + random.nextInt(4)));
+            }
+            assertSameAsRegex(words, randomString(random, alphabet, random.nextInt(60)));
+        }
+    }
+
+    private static void assertSameAsRegex(List<String> words, String text) {
+        List<Keyword> keywords = new ArrayList<>();
+        for (String word : words) {
+            keywords.add(new Keyword(word, 1));
+        }
+        int[] counts = KeywordMatcher.compile(keywords).countAll(text);
+
+        int[] expected = new int[words.size()];
+        for (int i = 0; i < words.size(); i++) {
+            expected[i] = regexCount(words.get(i), text);
+        }
+        assertThat(counts).as(words + " in " + text).containsExactly(expected);
+    }
+
+    // 原本 KeywordCounterEngine 的計數方式
+    private static int regexCount(String word, String text) {
+        Matcher matcher = Pattern.compile(Pattern.quote(word), Pattern.CASE_INSENSITIVE).matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.searchengine.engine;
+
+import com.example.searchengine.model.Keyword;
+import com.example.searchengine.model.ProcessedPage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * LinkFrontier：子頁候選的排序 (分數高 -> 低，同分依文件順序)、capacity 上限與略過規則
+ */
+class LinkFrontierTest {
+
+    private static final String PARENT = "https://blog.example.com/post/1";
+
+    private static final KeywordMatcher MATCHER = KeywordMatcher.compile(Arrays.asList(
+            new Keyword("士林夜市", 5), new Keyword("雞排", 3)));
+
+    @Test
+    void linksAreOrderedByScoreThenDocumentOrder() {
+        List<LinkFrontier.ScoredLink> selected = LinkFrontier.select(page(
+                "https://other.example.org/a/b", "其它",
+                "https://blog.example.com/post/2", "下一篇",
+                "https://other.example.org/food", "豪大雞排",
+                "https://other.example.org/%E5%A3%AB%E6%9E%97%E5%A4%9C%E5%B8%82", "",
+                "https://blog.example.com/post/3", "上一篇"), PARENT, MATCHER, 10);
+
+        assertThat(urls(selected)).containsExactly(
+                "https://other.example.org/%E5%A3%AB%E6%9E%97%E5%A4%9C%E5%B8%82", // URL 解碼後命中 士林夜市 (+5)
+                "https://other.example.org/food",                               // 錨點文字命中 雞排 (+3)
+                "https://blog.example.com/post/2",                              // 同網域 (+2)
+                "https://blog.example.com/post/3",
+                "https://other.example.org/a/b");
+        assertThat(selected.get(0).getScore()).isEqualTo(5);
+    }
+
+    @Test
+    void onlyTheBestCapacityLinksAreKept() {
+        List<String> links = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            links.add("https://other.example.org/list/" + i);
+            links.add(i == 13 ? "雞排" : "第 " + i + " 頁");
+        }
+        List<LinkFrontier.ScoredLink> selected = LinkFrontier.select(page(links.toArray(new String[0])), PARENT, MATCHER, 3);
+
+        // 最高分的一個，之後同分的依文件順序取前兩個
+        assertThat(urls(selected)).containsExactly(
+                "https://other.example.org/list/13",
+                "https://other.example.org/list/0",
+                "https://other.example.org/list/1");
+    }
+
+    @Test
+    void uselessLinksAreSkipped() {
+        List<LinkFrontier.ScoredLink> selected = LinkFrontier.select(page(
+                PARENT + "#comments", "留言",
+                "https://www.facebook.com/sharer.php?u=x", "分享",
+                "https://cdn.example.com/page", "CDN",
+                "https://blog.example.com/images/photo.JPG", "圖片",
+                "https://blog.example.com/member/login.php", "登入",
+                "https://blog.example.com/post/2#top", "下一篇",
+                "https://blog.example.com/post/2", "下一篇 (重複)"), PARENT, MATCHER, 10);
+
+        assertThat(urls(selected)).containsExactly("https://blog.example.com/post/2");
+        assertThat(selected.get(0).getAnchorText()).isEqualTo("下一篇");
+    }
+
+    @Test
+    void homePageAndDeepPathsArePenalized() {
+        assertThat(LinkFrontier.score("https://blog.example.com/", "", "blog.example.com", MATCHER)).isEqualTo(-1);
+        assertThat(LinkFrontier.score("https://blog.example.com/?p=1", "", "blog.example.com", MATCHER)).isEqualTo(2);
+        assertThat(LinkFrontier.score("https://other.example.org/a/b/c/d/e/f", "", "blog.example.com", MATCHER)).isEqualTo(-2);
+    }
+
+    @Test
+    void emptyInputOrCapacityGivesNoLinks() {
+        assertThat(LinkFrontier.select(page("https://other.example.org/a", "a"), PARENT, MATCHER, 0)).isEmpty();
+        assertThat(LinkFrontier.select(ProcessedPage.EMPTY, PARENT, MATCHER, 5)).isEmpty();
+        assertThat(LinkFrontier.select(null, PARENT, MATCHER, 5)).isEmpty();
+    }
+
+    /**
+     * url, anchorText, url, anchorText, ...
+     */
+    private static ProcessedPage page(String... urlsAndTexts) {
+        List<ProcessedPage.Link> links = new ArrayList<>();
+        for (int i = 0; i < urlsAndTexts.length; i += 2) {
+            links.add(new ProcessedPage.Link(urlsAndTexts[i], urlsAndTexts[i + 1]));
+        }
+        return new ProcessedPage("", links);
+    }
+
+    private static List<String> urls(List<LinkFrontier.ScoredLink> links) {
+        List<String> urls = new ArrayList<>();
+        for (LinkFrontier.ScoredLink link : links) {
+            urls.add(link.getUrl());
+        }
+        return urls;
+    }
+}
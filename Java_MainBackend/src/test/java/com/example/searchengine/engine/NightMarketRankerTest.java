@@ -0,0 +1,131 @@
+package com.example.searchengine.engine;
+
+import com.example.searchengine.model.Keyword;
+import com.example.searchengine.model.VoyageReRanker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * NightMarketRanker 的行政區加分：行政區以「縣市 + 行政區」比對，
+ * 好幾個縣市都有的行政區名稱 (中正區) 只在查詢指定的縣市裡加分；同名夜市只計一次
+ */
+class NightMarketRankerTest {
+
+    private static final String CSV = String.join("\n",
+            "基隆廟口夜市,仁愛區愛四路,每日,基隆市",
+            "八斗子夜市,中正區北寧路,週六、日,基隆市",
+            "南機場觀光夜市,中正區中華路二段307巷,每日,臺北市",
+            "士林夜市,士林區基河路、大東路、大南路,每日,臺北市",
+            "社子夜市,士林區社中街,,臺北市",
+            "公館夜市,大安區羅斯福路四段90巷,,臺北市",
+            "公館夜市,公館鄉警察局後方,週六,苗栗縣") + "\n";
+
+    private static final String PAGE = "八斗子夜市 南機場觀光夜市 社子夜市 公館夜市";
+
+    @TempDir
+    Path tempDir;
+
+    private NightMarketRanker ranker;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path csv = tempDir.resolve("nightmarket_info.csv");
+        Files.write(csv, CSV.getBytes(StandardCharsets.UTF_8));
+        // 只看行政區加分
+        ranker = new NightMarketRanker(new VoyageReRanker(csv.toString()), 0, 10, 10);
+    }
+
+    @Test
+    void sharedDistrictNameOnlyBoostsMarketsInTheQueriedCity() {
+        assertThat(boostedMarkets("臺北", "中正區")).containsExactly("南機場觀光夜市");
+        assertThat(boostedMarkets("基隆市", "中正")).containsExactly("八斗子夜市");
+    }
+
+    @Test
+    void sharedDistrictNameWithoutCityIsIgnored() {
+        assertThat(boostedMarkets("中正區", "美食")).isEmpty();
+    }
+
+    @Test
+    void uniqueDistrictNameNeedsNoCity() {
+        assertThat(boostedMarkets("士林", "美食")).containsExactly("社子夜市");
+    }
+
+    @Test
+    void namedMarketBoostsItsOwnCityAndDistrict() {
+        // 同名夜市只取查詢縣市的那一個
+        assertThat(boostedMarkets("公館夜市", "臺北市")).containsExactly("公館夜市 (臺北市大安區)");
+        // 查詢中夜市所在的縣市也用來判斷行政區
+        assertThat(boostedMarkets("八斗子夜市", "中正區")).containsExactly("八斗子夜市");
+    }
+
+    @Test
+    void longWordsAreNotTurnedIntoDistricts() {
+        assertThat(boostedMarkets("士林美食")).isEmpty();
+    }
+
+    @Test
+    void sameNameMarketsAreBoostedOnce() {
+        NightMarketRanker openToday = new NightMarketRanker(ranker(), 10, 10, 2);
+        Map<String, String> details = new HashMap<>();
+
+        // 週六：苗栗縣的公館夜市有營業，臺北市的沒有標營業日
+        int boost = openToday.forQuery(List.of(new Keyword("雞排", 1.0)), DayOfWeek.SATURDAY)
+                .apply("公館夜市 公館夜市 八斗子夜市", details);
+
+        assertThat(boost).isEqualTo(20);
+        assertThat(details).containsOnlyKeys("[今日營業] 公館夜市", "[今日營業] 八斗子夜市");
+    }
+
+    @Test
+    void sameNameMarketInTheQueriedCityIsPreferred() {
+        NightMarketRanker openToday = new NightMarketRanker(ranker(), 10, 10, 3);
+        Map<String, String> details = new HashMap<>();
+
+        int boost = openToday.forQuery(List.of(new Keyword("臺北市", 1.0), new Keyword("公館夜市", 1.0)), DayOfWeek.SATURDAY)
+                .apply("公館夜市", details);
+
+        // 取臺北市大安區的公館夜市 (週六沒有營業)，不是苗栗縣的
+        assertThat(boost).isEqualTo(10);
+        assertThat(details).containsOnlyKeys("[同行政區] 公館夜市 (臺北市大安區)");
+    }
+
+    private VoyageReRanker ranker() {
+        return new VoyageReRanker(tempDir.resolve("nightmarket_info.csv").toString());
+    }
+
+    /**
+     * 加分明細裡的夜市 (明細為 "[同行政區] 名稱 (縣市行政區)")；同名夜市保留括號以區分
+     */
+    private List<String> boostedMarkets(String... words) {
+        List<Keyword> keywords = new ArrayList<>();
+        for (String word : words) {
+            keywords.add(new Keyword(word, 1.0));
+        }
+        Map<String, String> details = new HashMap<>();
+        ranker.forQuery(keywords, DayOfWeek.MONDAY).apply(PAGE, details);
+
+        List<String> markets = new ArrayList<>();
+        for (String detail : details.keySet()) {
+            if (!detail.startsWith("[同行政區] ")) {
+                continue;
+            }
+            String market = detail.substring("[同行政區] ".length());
+            markets.add(market.startsWith("公館夜市") ? market : market.substring(0, market.indexOf(" (")));
+        }
+        return markets;
+    }
+}
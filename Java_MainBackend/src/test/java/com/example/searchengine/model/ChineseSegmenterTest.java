@@ -0,0 +1,90 @@
+package com.example.searchengine.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ChineseSegmenter 的動態規劃斷詞：最少詞數、停用詞與單字不輸出、未知字合併、confidence
+ */
+class ChineseSegmenterTest {
+
+    private static final String CSV = String.join("\n",
+            "士林夜市,士林區基河路,每日,臺北市",
+            "饒河街觀光夜市,松山區饒河街,每日,臺北市") + "\n";
+
+    @TempDir
+    Path tempDir;
+
+    private ChineseSegmenter segmenter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path csv = tempDir.resolve("nightmarket_info.csv");
+        Files.write(csv, CSV.getBytes(StandardCharsets.UTF_8));
+        segmenter = new ChineseSegmenter(new VoyageReRanker(csv.toString()));
+    }
+
+    @Test
+    void stopWordsAreDroppedAndLongestWordsWin() {
+        ChineseSegmenter.Segmentation segmentation = segmenter.segment("我想去士林夜市吃大雞排");
+
+        assertThat(segmentation.getTokens()).containsExactly("士林夜市", "大雞排");
+        assertThat(segmentation.getConfidence()).isEqualTo(1.0);
+        assertThat(segmentation.isConfident()).isTrue();
+    }
+
+    @Test
+    void fewestWordsAreChosen() {
+        // 麻辣臭豆腐 (1 詞) 優於 麻辣 (未知) + 臭豆腐
+        assertThat(segmenter.segment("麻辣臭豆腐").getTokens()).containsExactly("麻辣臭豆腐");
+        // 行政區整個當一個詞，也收去掉「區」的名稱
+        assertThat(segmenter.segment("士林區的胡椒餅").getTokens()).containsExactly("士林區", "胡椒餅");
+        assertThat(segmenter.segment("饒河街夜市").getTokens()).containsExactly("饒河街夜市");
+    }
+
+    @Test
+    void normalizedMatchKeepsTheOriginalText() {
+        assertThat(segmenter.segment("台北101夜市").getTokens()).containsExactly("台北", "101", "夜市");
+    }
+
+    @Test
+    void punctuationSeparatesWords() {
+        assertThat(segmenter.segment("雞排，珍珠奶茶！").getTokens()).containsExactly("雞排", "珍珠奶茶");
+    }
+
+    @Test
+    void unknownCharactersAreMergedAndLowerConfidence() {
+        ChineseSegmenter.Segmentation segmentation = segmenter.segment("饒河街有什麼好吃的鼎邊趖");
+
+        assertThat(segmentation.getTokens()).containsExactly("饒河街", "鼎邊趖");
+        // 12 個字中 鼎邊趖 3 個字不在詞庫
+        assertThat(segmentation.getConfidence()).isEqualTo(0.75);
+        assertThat(segmentation.isConfident()).isFalse();
+    }
+
+    @Test
+    void learnedWordsAreUsedNextTime() {
+        assertThat(segmenter.segment("阿宗麵線").getTokens()).containsExactly("阿宗", "麵線");
+
+        segmenter.learn(Collections.singletonList("阿宗麵線"));
+
+        assertThat(segmenter.segment("阿宗麵線").getTokens()).containsExactly("阿宗麵線");
+        assertThat(segmenter.segment("阿宗麵線").isConfident()).isTrue();
+    }
+
+    @Test
+    void emptyInput() {
+        assertThat(segmenter.segment("").getTokens()).isEmpty();
+        assertThat(segmenter.segment("").isConfident()).isFalse();
+        assertThat(segmenter.segment("我想吃").isConfident()).isFalse();
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.searchengine.model;
+
+import com.example.searchengine.model.ClassificationModel.ClassificationResult;
+import com.example.searchengine.model.VoyageReRanker.BestMatchResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ClassificationModel 的本地判定只處理 reranker 一定會得到相同結論的 token，
+ * 其餘 (名稱開頭、沒有共同字) 仍由 reranker 決定；CSV 重新載入時只重新判定受影響的快取
+ */
+class ClassificationModelTest {
+
+    private static final String CSV = String.join("\n",
+            "士林夜市,士林區基河路,每日,臺北市",
+            "饒河街觀光夜市,松山區饒河街,每日,臺北市",
+            "逢甲夜市,西屯區文華路,每日,臺中市") + "\n";
+
+    @TempDir
+    Path tempDir;
+
+    private Path csv;
+    private RecordingReRanker reRanker;
+    private ClassificationModel model;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csv = tempDir.resolve("nightmarket_info.csv");
+        Files.write(csv, CSV.getBytes(StandardCharsets.UTF_8));
+        reRanker = new RecordingReRanker(csv.toString());
+        model = new ClassificationModel(reRanker);
+    }
+
+    @Test
+    void exactNamesAreResolvedWithoutTheReranker() {
+        List<ClassificationResult> results = model.predictCategories(Arrays.asList("士林夜市", "台北市", "臺中市"));
+
+        assertResult(results.get(0), "Night Market Name", "士林夜市");
+        assertResult(results.get(1), "County/City", "臺北市");
+        assertResult(results.get(2), "County/City", "臺中市");
+        assertThat(reRanker.sent).isEmpty();
+    }
+
+    @Test
+    void prefixOfANameIsLeftToTheReranker() {
+        reRanker.answers.put("士林", new BestMatchResponse("士林夜市", 0.42));
+
+        assertResult(model.predictCategory("士林"), "Food Name", null);
+        assertThat(reRanker.sent).containsExactly("士林");
+    }
+
+    @Test
+    void tokenWithoutSharedBigramIsLeftToTheReranker() {
+        reRanker.answers.put("夜店", new BestMatchResponse("士林夜市", 0.7));
+
+        assertResult(model.predictCategory("夜店"), "Night Market Name", "士林夜市");
+        assertResult(model.predictCategory("雞排"), "Food Name", null);
+        assertThat(reRanker.sent).containsExactly("夜店", "雞排");
+    }
+
+    @Test
+    void rerankerAnswersAreCached() {
+        reRanker.answers.put("逢甲", new BestMatchResponse("逢甲夜市", 0.9));
+
+        assertResult(model.predictCategory("逢甲"), "Night Market Name", "逢甲夜市");
+        assertResult(model.predictCategory("逢甲"), "Night Market Name", "逢甲夜市");
+        assertThat(reRanker.sent).containsExactly("逢甲");
+    }
+
+    @Test
+    void reloadOnlyDropsAffectedCachedClassifications() throws IOException {
+        reRanker.answers.put("逢甲", new BestMatchResponse("逢甲夜市", 0.9));
+        reRanker.answers.put("雞排", new BestMatchResponse("士林夜市", 0.1));
+        reRanker.answers.put("士林", new BestMatchResponse("士林夜市", 0.42));
+        reRanker.answers.put("華西", new BestMatchResponse("士林夜市", 0.2));
+        model.predictCategories(Arrays.asList("逢甲", "雞排", "士林", "華西"));
+        reRanker.sent.clear();
+
+        // 移除 逢甲夜市、新增 華西街觀光夜市
+        Files.write(csv, String.join("\n",
+                "士林夜市,士林區基河路,每日,臺北市",
+                "饒河街觀光夜市,松山區饒河街,每日,臺北市",
+                "華西街觀光夜市,萬華區華西街,每日,臺北市").getBytes(StandardCharsets.UTF_8));
+        assertThat(reRanker.reload()).isTrue();
+        model.refreshKeywordLists();
+
+        reRanker.answers.put("逢甲", new BestMatchResponse("士林夜市", 0.3));
+        reRanker.answers.put("華西", new BestMatchResponse("華西街觀光夜市", 0.8));
+        List<ClassificationResult> results = model.predictCategories(Arrays.asList("逢甲", "雞排", "士林", "華西", "華西街觀光夜市"));
+
+        assertResult(results.get(0), "Food Name", null);
+        assertResult(results.get(1), "Food Name", null);
+        assertResult(results.get(2), "Food Name", null);
+        assertResult(results.get(3), "Night Market Name", "華西街觀光夜市");
+        assertResult(results.get(4), "Night Market Name", "華西街觀光夜市");
+        // 判定為已移除的名稱、與新名稱有共同字的重新判定，其餘沿用快取
+        assertThat(reRanker.sent).containsExactly("逢甲", "華西");
+    }
+
+    @Test
+    void reloadWithTheSameNamesKeepsTheCache() throws IOException {
+        reRanker.answers.put("逢甲", new BestMatchResponse("逢甲夜市", 0.9));
+        model.predictCategory("逢甲");
+
+        // 只改營業日
+        Files.write(csv, CSV.replace("逢甲夜市,西屯區文華路,每日", "逢甲夜市,西屯區文華路,週五六日")
+                .getBytes(StandardCharsets.UTF_8));
+        assertThat(reRanker.reload()).isTrue();
+        model.refreshKeywordLists();
+
+        assertResult(model.predictCategory("逢甲"), "Night Market Name", "逢甲夜市");
+        assertThat(reRanker.sent).containsExactly("逢甲");
+        assertThat(reRanker.getCandidates().nightMarketInfo("逢甲夜市").getOpenDays()).isEqualTo("週五六日");
+    }
+
+    @Test
+    void reloadWithReorderedOrDuplicatedRowsKeepsCaching() throws IOException {
+        String fingerprint = fingerprintOf(model);
+
+        // 列的順序改變，並多一列同名的夜市
+        Files.write(csv, String.join("\n",
+                "逢甲夜市,西屯區文華路,每日,臺中市",
+                "饒河街觀光夜市,松山區饒河街,每日,臺北市",
+                "士林夜市,士林區基河路,每日,臺北市",
+                "逢甲夜市,,,").getBytes(StandardCharsets.UTF_8));
+        assertThat(reRanker.reload()).isTrue();
+        model.refreshKeywordLists();
+        assertThat(fingerprintOf(model)).isEqualTo(fingerprint);
+
+        // reload 之後的 reranker 結果仍會寫入快取
+        reRanker.answers.put("逢甲", new BestMatchResponse("逢甲夜市", 0.9));
+        assertResult(model.predictCategory("逢甲"), "Night Market Name", "逢甲夜市");
+        assertResult(model.predictCategory("逢甲"), "Night Market Name", "逢甲夜市");
+        assertThat(reRanker.sent).containsExactly("逢甲");
+    }
+
+    /**
+     * 存檔內容裡記錄的清單版本
+     */
+    private String fingerprintOf(ClassificationModel model) throws IOException {
+        Path snapshot = tempDir.resolve("fingerprint.json");
+        model.getClassificationCache().save(snapshot);
+        return new ObjectMapper().readTree(snapshot.toFile()).get("fingerprint").asText();
+    }
+
+    private static void assertResult(ClassificationResult result, String category, String matchedValue) {
+        assertThat(result.getCategory()).isEqualTo(category);
+        assertThat(result.getMatchedValue()).isEqualTo(matchedValue);
+    }
+
+    /**
+     * 不打 Python API：回傳預先設定的結果 (沒設定的 token 視為呼叫失敗)，並記錄送出的 token
+     */
+    private static final class RecordingReRanker extends VoyageReRanker {
+        private final List<String> sent = new ArrayList<>();
+        private final Map<String, BestMatchResponse> answers = new HashMap<>();
+
+        RecordingReRanker(String csvPath) {
+            super(csvPath);
+        }
+
+        @Override
+        public List<BestMatchResponse> getBestMatchesWithScore(List<String> inputs, CandidateSet candidates) {
+            sent.addAll(inputs);
+            List<BestMatchResponse> matches = new ArrayList<>();
+            for (String input : inputs) {
+                matches.add(answers.get(input));
+            }
+            return matches;
+        }
+    }
+}
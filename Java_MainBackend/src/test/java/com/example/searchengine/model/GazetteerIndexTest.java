@@ -0,0 +1,122 @@
+package com.example.searchengine.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GazetteerIndex 的完全比對 (正規化、類別優先順序)、bigram Dice 相似度與增量更新 (withChanges)
+ */
+class GazetteerIndexTest {
+
+    private static GazetteerIndex index() {
+        Map<String, List<String>> lists = new LinkedHashMap<>();
+        lists.put("County/City", Arrays.asList("臺北市", "臺中市", "新竹市"));
+        lists.put("Night Market Name", Arrays.asList("士林夜市", "饒河街觀光夜市", "逢甲夜市", "新竹市", "Sunset Market"));
+        return GazetteerIndex.build(lists);
+    }
+
+    @Test
+    void exactMatchIsNormalized() {
+        GazetteerIndex index = index();
+
+        assertThat(index.exact("台北市").getValue()).isEqualTo("臺北市");
+        assertThat(index.exact(" 士林 夜市 ").getValue()).isEqualTo("士林夜市");
+        assertThat(index.exact("SUNSET market").getValue()).isEqualTo("Sunset Market");
+        assertThat(index.exact("台北市").getType()).isEqualTo(GazetteerIndex.MatchType.EXACT);
+        assertThat(index.exact("士林")).isNull();
+    }
+
+    @Test
+    void earlierCategoryWinsForTheSameName() {
+        GazetteerIndex index = index();
+
+        assertThat(index.exact("新竹市").getCategory()).isEqualTo("County/City");
+        // 重複的名稱只建一次
+        assertThat(index.size()).isEqualTo(7);
+    }
+
+    @Test
+    void fuzzyScoreIsBigramDice() {
+        GazetteerIndex.Match match = index().bestFuzzy("饒河街夜市");
+
+        // 饒河 河街 街夜 夜市 vs 饒河 河街 街觀 觀光 光夜 夜市：2 * 3 / (4 + 6)
+        assertThat(match.getValue()).isEqualTo("饒河街觀光夜市");
+        assertThat(match.getCategory()).isEqualTo("Night Market Name");
+        assertThat(match.getType()).isEqualTo(GazetteerIndex.MatchType.FUZZY);
+        assertThat(match.getScore()).isEqualTo(0.6);
+    }
+
+    @Test
+    void fuzzyPrefersTheHighestScoreThenTheEarliestName() {
+        GazetteerIndex index = index();
+
+        // 士林 林夜 夜市 vs 士林夜市 (3/3) 比 逢甲夜市 (1/3) 高
+        assertThat(index.bestFuzzy("士林夜市場").getValue()).isEqualTo("士林夜市");
+        // 只共用 "夜市"：士林夜市 與 逢甲夜市 同分，取先建立的
+        assertThat(index.bestFuzzy("華西夜市").getValue()).isEqualTo("士林夜市");
+    }
+
+    @Test
+    void fuzzyWithoutSharedBigramIsNull() {
+        GazetteerIndex index = index();
+
+        assertThat(index.bestFuzzy("雞排")).isNull();
+        assertThat(index.bestFuzzy("")).isNull();
+    }
+
+    @Test
+    void withChangesMatchesAFreshBuild() {
+        GazetteerIndex before = index();
+        Map<String, List<String>> lists = new LinkedHashMap<>();
+        lists.put("County/City", Arrays.asList("臺北市", "臺中市", "新竹市"));
+        lists.put("Night Market Name", Arrays.asList("士林夜市", "逢甲夜市", "新竹市", "華西街觀光夜市", "饒河夜市"));
+        Map<String, List<String>> oldLists = new LinkedHashMap<>();
+        oldLists.put("County/City", Arrays.asList("臺北市", "臺中市", "新竹市"));
+        oldLists.put("Night Market Name", Arrays.asList("士林夜市", "饒河街觀光夜市", "逢甲夜市", "新竹市", "Sunset Market"));
+
+        GazetteerIndex changed = before.withChanges(GazetteerDelta.between(oldLists, lists));
+        GazetteerIndex rebuilt = GazetteerIndex.build(lists);
+
+        assertThat(changed.size()).isEqualTo(rebuilt.size());
+        for (String token : Arrays.asList("饒河街觀光夜市", "Sunset Market", "華西街觀光夜市", "台北市", "新竹市")) {
+            assertThat(describe(changed.exact(token))).isEqualTo(describe(rebuilt.exact(token)));
+        }
+        for (String token : Arrays.asList("饒河街夜市", "華西夜市", "士林夜市場", "觀光夜市", "sunset")) {
+            assertThat(describe(changed.bestFuzzy(token))).isEqualTo(describe(rebuilt.bestFuzzy(token)));
+        }
+        // 原本的索引不受影響
+        assertThat(before.exact("饒河街觀光夜市").getValue()).isEqualTo("饒河街觀光夜市");
+        assertThat(before.exact("華西街觀光夜市")).isNull();
+        assertThat(before.size()).isEqualTo(7);
+    }
+
+    @Test
+    void removingTheWinningCategoryKeepsTheOtherName() {
+        Map<String, List<String>> without = new LinkedHashMap<>();
+        without.put("County/City", Arrays.asList("臺北市", "臺中市"));
+        without.put("Night Market Name", Arrays.asList("士林夜市", "饒河街觀光夜市", "逢甲夜市", "新竹市", "Sunset Market"));
+        Map<String, List<String>> with = new LinkedHashMap<>();
+        with.put("County/City", Arrays.asList("臺北市", "臺中市", "新竹市"));
+        with.put("Night Market Name", without.get("Night Market Name"));
+
+        GazetteerIndex removed = index().withChanges(GazetteerDelta.between(with, without));
+        assertThat(removed.exact("新竹市").getCategory()).isEqualTo("Night Market Name");
+        assertThat(removed.bestFuzzy("新竹市區").getCategory()).isEqualTo("Night Market Name");
+
+        // 加回來時優先的類別再度勝出
+        GazetteerIndex addedBack = removed.withChanges(GazetteerDelta.between(without, with));
+        assertThat(addedBack.exact("新竹市").getCategory()).isEqualTo("County/City");
+        assertThat(addedBack.size()).isEqualTo(7);
+    }
+
+    private static String describe(GazetteerIndex.Match match) {
+        return match == null ? null
+                : match.getCategory() + "/" + match.getValue() + "/" + match.getScore() + "/" + match.getType();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.searchengine.model;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * HtmlStreamParser 與原本 Jsoup 版 ProcessedPage.fromHtml 的輸出比較：
+ * 關鍵字計數是在這段文字上算的，兩者的文字與外連必須一致
+ */
+class HtmlStreamParserTest {
+
+    private static final String BASE = "https://example.com/dir/page.html";
+
+    private static final String[] CORPUS = {
+            // 完整的文件
+            "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>士林夜市美食</title>"
+                    + "<link rel=\"stylesheet\" href=\"a.css\"><style>p { color: red }</style></head>"
+                    + "<body><h1>士林夜市</h1><p>大餅包小餅、<b>豪大</b>雞排</p>"
+                    + "<a href=\"/food\">美食 <i>清單</i></a> <a href=\"https://maps.example.com/?q=士林\">地圖</a></body></html>",
+            // 省略 </head> 與 <body>：第一個 body 標籤或文字就結束 head
+            "<html><head><title>標題</title><p>沒有 body 的頁面 士林夜市</p>",
+            "<head><title>x</title><meta name=a>直接出現的文字<div>區塊</div>",
+            "<title>只有標題</title><p>內文</p>",
+            "<html><head><meta a=b>\n  <link x>\n</head>\n<body>\n  <div> 雞排 </div>\n</body></html>",
+            // noscript / textarea 的文字 Jsoup 會保留
+            "<body><noscript>請啟用 JavaScript 士林</noscript><textarea>留言 雞排</textarea></body>",
+            "<head><noscript><link rel=x></noscript><meta name=a></head><body>ok</body>",
+            // body 裡的 title / svg / template
+            "<p>x</p><title>body 裡的標題</title><svg><text>svg 文字</text></svg><template><p>tpl</p></template>",
+            // 空白：U+00A0 當空白，全形空白保留，零寬空白 / 軟連字號去掉
+            "<p>a b&nbsp;c  d</p><p>全形　空白</p><p>零​寬­字</p><p>多   空白\n\t換行</p>",
+            // 區塊元素與行內元素
+            "<div>a<span>b</span>c</div><div>d</div>e<br>f<ul><li>一<li>二</ul><table><tr><td>甲<td>乙</table>",
+            // 實體、註解、script、不是標籤的 <
+            "<p>A &amp; B &lt;tag&gt; &#22812;&#x5E02; &copy; &unknown; 5&nbsp;元</p>",
+            "<!-- 註解 --><script>var x = '<p>不算</p>';</script><p>x<!-- c2 -->y</p><p>a < b and c>d</p>",
+            // 外連：相對網址、base href、非 http 協定、巢狀文字
+            "<head><base href=\"https://other.example.org/base/\"></head><body><a href=\"x.html\">相對</a>"
+                    + "<a href=\"mailto:a@b.c\">信箱</a><a href=\"javascript:void(0)\">js</a>"
+                    + "<a href=\"#top\">頂端</a><a href=\" /trim \">空白</a><a>沒有 href</a></body>",
+    };
+
+    @Test
+    void textAndLinksMatchJsoup() {
+        for (String html : CORPUS) {
+            ProcessedPage expected = jsoup(html);
+            ProcessedPage actual = HtmlStreamParser.parse(html, BASE);
+            assertThat(actual.getText()).as(html).isEqualTo(expected.getText());
+            assertThat(urls(actual)).as(html).isEqualTo(urls(expected));
+            assertThat(anchorTexts(actual)).as(html).isEqualTo(anchorTexts(expected));
+        }
+    }
+
+    @Test
+    void feedingOneCharacterAtATimeGivesTheSameResult() {
+        for (String html : CORPUS) {
+            HtmlStreamParser parser = new HtmlStreamParser(BASE, 0);
+            for (int i = 0; i < html.length(); i++) {
+                parser.feed(html.substring(i, i + 1));
+            }
+            ProcessedPage actual = parser.finish();
+            assertThat(actual.getText()).as(html).isEqualTo(jsoup(html).getText());
+            assertThat(urls(actual)).as(html).isEqualTo(urls(jsoup(html)));
+        }
+    }
+
+    @Test
+    void leadingByteOrderMarkIsDropped() throws IOException {
+        String html = "﻿<!DOCTYPE html><p>BOM 開頭的頁面</p>";
+        // 從 bytes 解析時 Jsoup 會去掉 BOM (抓網頁時走的是這條路)
+        Document doc = Jsoup.parse(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), null, BASE);
+
+        assertThat(HtmlStreamParser.parse(html, BASE).getText()).isEqualTo(doc.body().text());
+        assertThat(HtmlStreamParser.parse(html, BASE).getText()).isEqualTo("BOM 開頭的頁面");
+    }
+
+    // 原本的 ProcessedPage.fromHtml
+    private static ProcessedPage jsoup(String html) {
+        Document doc = Jsoup.parse(html, BASE);
+        List<ProcessedPage.Link> links = new ArrayList<>();
+        for (Element a : doc.select("a[href]")) {
+            String absUrl = a.absUrl("href");
+            if (absUrl.startsWith("http://") || absUrl.startsWith("https://")) {
+                links.add(new ProcessedPage.Link(absUrl, a.text()));
+            }
+        }
+        return new ProcessedPage(doc.body().text(), links);
+    }
+
+    private static List<String> urls(ProcessedPage page) {
+        List<String> urls = new ArrayList<>();
+        for (ProcessedPage.Link link : page.getLinks()) {
+            urls.add(link.getUrl());
+        }
+        return urls;
+    }
+
+    private static List<String> anchorTexts(ProcessedPage page) {
+        List<String> texts = new ArrayList<>();
+        for (ProcessedPage.Link link : page.getLinks()) {
+            texts.add(link.getAnchorText());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.searchengine.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * NightMarketInfo.parseOpenDays：nightmarket_info.csv 裡出現的營業日寫法
+ */
+class NightMarketInfoTest {
+
+    @Test
+    void singleDaysAndLists() {
+        assertThat(NightMarketInfo.parseOpenDays("週四")).isEqualTo(mask(DayOfWeek.THURSDAY));
+        assertThat(NightMarketInfo.parseOpenDays("周日")).isEqualTo(mask(DayOfWeek.SUNDAY));
+        assertThat(NightMarketInfo.parseOpenDays("週三、六")).isEqualTo(mask(DayOfWeek.WEDNESDAY, DayOfWeek.SATURDAY));
+        assertThat(NightMarketInfo.parseOpenDays("週二、週五"))
+                .isEqualTo(mask(DayOfWeek.TUESDAY, DayOfWeek.FRIDAY));
+        assertThat(NightMarketInfo.parseOpenDays("三、五、六、日"))
+                .isEqualTo(mask(DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY, DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+        assertThat(NightMarketInfo.parseOpenDays("週五六日"))
+                .isEqualTo(mask(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+        assertThat(NightMarketInfo.parseOpenDays("週一, 週天"))
+                .isEqualTo(mask(DayOfWeek.MONDAY, DayOfWeek.SUNDAY));
+    }
+
+    @Test
+    void ranges() {
+        assertThat(NightMarketInfo.parseOpenDays("週四～日"))
+                .isEqualTo(mask(DayOfWeek.THURSDAY, DayOfWeek.FRIDAY, DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+        assertThat(NightMarketInfo.parseOpenDays("週一至三"))
+                .isEqualTo(mask(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY));
+        // 跨過週日
+        assertThat(NightMarketInfo.parseOpenDays("週六-一"))
+                .isEqualTo(mask(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY, DayOfWeek.MONDAY));
+        assertThat(NightMarketInfo.parseOpenDays("週二~四、日"))
+                .isEqualTo(mask(DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.SUNDAY));
+    }
+
+    @Test
+    void everyDay() {
+        assertThat(NightMarketInfo.parseOpenDays("每日")).isEqualTo(NightMarketInfo.EVERY_DAY);
+        assertThat(NightMarketInfo.parseOpenDays("店面每日，攤販週三公休")).isEqualTo(NightMarketInfo.EVERY_DAY);
+    }
+
+    @Test
+    void unknownTextIsZero() {
+        assertThat(NightMarketInfo.parseOpenDays(null)).isEqualTo(0);
+        assertThat(NightMarketInfo.parseOpenDays("")).isEqualTo(0);
+        assertThat(NightMarketInfo.parseOpenDays(" 週 ")).isEqualTo(0);
+        assertThat(NightMarketInfo.parseOpenDays("不定時")).isEqualTo(0);
+        assertThat(NightMarketInfo.parseOpenDays("不定期")).isEqualTo(0);
+        assertThat(NightMarketInfo.parseOpenDays("永久停業")).isEqualTo(0);
+        assertThat(NightMarketInfo.parseOpenDays("每年農曆七月二十九日")).isEqualTo(0);
+    }
+
+    @Test
+    void isOpenOnUsesTheMask() {
+        NightMarketInfo info = new NightMarketInfo("八斗子夜市", "中正區北寧路", "週六、日", "基隆市");
+
+        assertThat(info.isOpenOn(DayOfWeek.SATURDAY)).isTrue();
+        assertThat(info.isOpenOn(DayOfWeek.SUNDAY)).isTrue();
+        assertThat(info.isOpenOn(DayOfWeek.FRIDAY)).isFalse();
+        assertThat(new NightMarketInfo("某夜市", "", "不定時").isOpenOn(DayOfWeek.SATURDAY)).isFalse();
+    }
+
+    private static int mask(DayOfWeek... days) {
+        int mask = 0;
+        for (DayOfWeek day : days) {
+            mask |= NightMarketInfo.dayBit(day);
+        }
+        return mask;
+    }
+}
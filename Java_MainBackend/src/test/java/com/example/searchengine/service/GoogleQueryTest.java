@@ -0,0 +1,177 @@
+package com.example.searchengine.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * GoogleQuery 對本機 stub server 的測試：5 頁同時送出、依排名順序合併、
+ * 遇到空頁提早結束並中止之後各頁的 HTTP 請求
+ */
+class GoogleQueryTest {
+
+    private static final Pattern START = Pattern.compile("[?&]start=(\\d+)");
+
+    /**
+     * 每一頁 (start) 的處理方式
+     */
+    private interface PageHandler {
+        void handle(int start, Socket socket, BufferedReader in) throws IOException, InterruptedException;
+    }
+
+    private ServerSocket serverSocket;
+    private volatile PageHandler handler;
+    private final Map<Integer, Boolean> requested = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread worker = new Thread(() -> serve(socket));
+                    worker.setDaemon(true);
+                    worker.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void stopStub() throws IOException {
+        serverSocket.close();
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String requestLine = in.readLine();
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                // 略過 header
+            }
+            Matcher m = START.matcher(requestLine == null ? "" : requestLine);
+            int start = m.find() ? Integer.parseInt(m.group(1)) : 1;
+            requested.put(start, true);
+            handler.handle(start, socket, in);
+        } catch (IOException | InterruptedException e) {
+            // client 中止連線
+        }
+    }
+
+    private GoogleQuery query() {
+        return new GoogleQuery("士林 雞排", "http://127.0.0.1:" + serverSocket.getLocalPort() + "/customsearch",
+                "key", "cx", SearchMetrics.NOOP);
+    }
+
+    private static void respond(Socket socket, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 " + status + " X\r\n"
+                + "Content-Type: application/json; charset=UTF-8\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(bytes);
+        out.flush();
+    }
+
+    private static String items(int start, int count) {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int rank = start + i;
+            items.add("{\"title\":\"t" + rank + "\",\"link\":\"http://example.com/" + rank + "\",\"snippet\":\"s" + rank + "\"}");
+        }
+        return "{\"items\":[" + String.join(",", items) + "]}";
+    }
+
+    @Test
+    void mergesPagesInRankOrderRegardlessOfArrivalOrder() throws IOException {
+        // 越前面的頁越慢回來
+        handler = (start, socket, in) -> {
+            Thread.sleep((51 - start) * 4L);
+            respond(socket, 200, items(start, 10));
+        };
+
+        Map<String, String> results = query().query();
+
+        assertThat(results).hasSize(50);
+        List<String> urls = new ArrayList<>(results.values());
+        for (int i = 0; i < urls.size(); i++) {
+            assertThat(urls.get(i)).isEqualTo("http://example.com/" + (i + 1));
+        }
+    }
+
+    @Test
+    void stopsAtFirstEmptyPageAndAbortsLaterRequests() throws Exception {
+        // 第 2 頁沒有結果；第 3 頁以後一直不回應，直到 client 中止連線
+        CountDownLatch aborted = new CountDownLatch(3);
+        handler = (start, socket, in) -> {
+            if (start == 1) {
+                respond(socket, 200, items(start, 10));
+            } else if (start == 11) {
+                respond(socket, 200, "{}");
+            } else if (in.read() == -1) {
+                aborted.countDown();
+            }
+        };
+
+        long startNanos = System.nanoTime();
+        Map<String, String> results = query().query();
+
+        assertThat(results).hasSize(10);
+        // 請求逾時是 5 秒；被取消的請求應該遠早於此就關閉連線
+        assertThat(aborted.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)).isLessThan(2000);
+    }
+
+    @Test
+    void cancellingPagesAbortsInFlightRequests() throws Exception {
+        CountDownLatch aborted = new CountDownLatch(5);
+        handler = (start, socket, in) -> {
+            if (in.read() == -1) {
+                aborted.countDown();
+            }
+        };
+
+        var pages = query().queryPagesAsync();
+        while (requested.size() < 5) {
+            Thread.sleep(10);
+        }
+        pages.forEach(page -> page.cancel(true));
+
+        assertThat(aborted.await(2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void failsWhenFirstPageFails() {
+        handler = (start, socket, in) -> respond(socket, start == 1 ? 500 : 200, items(start, 10));
+
+        assertThatThrownBy(() -> query().query())
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("500");
+    }
+}
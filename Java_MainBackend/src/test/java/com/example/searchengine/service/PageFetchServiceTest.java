@@ -0,0 +1,171 @@
+package com.example.searchengine.service;
+
+import com.example.searchengine.model.ProcessedPage;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PageFetchService 對本機 stub server 的測試：同一 URL 只下載一次 (single-flight)、
+ * 呼叫端各自取消、每個 host 的同時請求上限，以及閒置 HostQueue 的移除
+ */
+class PageFetchServiceTest {
+
+    private static final int PER_HOST_LIMIT = 2;
+
+    private HttpServer server;
+    private String baseUrl;
+    private PageFetchService pageFetchService;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::serve);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        pageFetchService = new PageFetchService(new PageCache(1 << 20, 30), SearchMetrics.NOOP,
+                2000, 4000, PER_HOST_LIMIT, 0, 0);
+    }
+
+    @AfterEach
+    void stopStub() {
+        release.countDown();
+        server.stop(0);
+        pageFetchService.shutdown();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            release.await(5, TimeUnit.SECONDS);
+            byte[] body = ("<html><body><p>" + exchange.getRequestURI().getPath() + " 士林夜市</p></body></html>")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @Test
+    void concurrentFetchesOfTheSameUrlShareOneDownload() throws Exception {
+        release = new CountDownLatch(1);
+        CompletableFuture<ProcessedPage> first = pageFetchService.fetchAsync(baseUrl + "/shilin");
+        CompletableFuture<ProcessedPage> second = pageFetchService.fetchAsync(baseUrl + "/shilin");
+        waitFor(() -> requests.get() == 1);
+
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getText()).isEqualTo("/shilin 士林夜市");
+        assertThat(second.get(5, TimeUnit.SECONDS).getText()).isEqualTo("/shilin 士林夜市");
+        assertThat(requests.get()).isEqualTo(1);
+        // 之後從 PageCache 取得
+        assertThat(pageFetchService.fetchAsync(baseUrl + "/shilin").get(5, TimeUnit.SECONDS).getText())
+                .isEqualTo("/shilin 士林夜市");
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void cancellingOneCallerKeepsTheDownloadForTheOthers() throws Exception {
+        release = new CountDownLatch(1);
+        CompletableFuture<ProcessedPage> first = pageFetchService.fetchAsync(baseUrl + "/raohe");
+        CompletableFuture<ProcessedPage> second = pageFetchService.fetchAsync(baseUrl + "/raohe");
+        waitFor(() -> requests.get() == 1);
+
+        first.cancel(true);
+        release.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS).getText()).isEqualTo("/raohe 士林夜市");
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void cancellingEveryCallerAbandonsTheDownload() throws Exception {
+        release = new CountDownLatch(1);
+        CompletableFuture<ProcessedPage> first = pageFetchService.fetchAsync(baseUrl + "/ningxia");
+        CompletableFuture<ProcessedPage> second = pageFetchService.fetchAsync(baseUrl + "/ningxia");
+        waitFor(() -> requests.get() == 1);
+
+        first.cancel(true);
+        second.cancel(true);
+
+        // 下一個呼叫端重新下載，不會接到已放棄的那次
+        CompletableFuture<ProcessedPage> third = pageFetchService.fetchAsync(baseUrl + "/ningxia");
+        waitFor(() -> requests.get() == 2);
+        release.countDown();
+        assertThat(third.get(5, TimeUnit.SECONDS).getText()).isEqualTo("/ningxia 士林夜市");
+    }
+
+    @Test
+    void requestsPerHostAreLimitedAndIdleQueuesAreRetired() throws Exception {
+        release = new CountDownLatch(1);
+        List<CompletableFuture<ProcessedPage>> pages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            pages.add(pageFetchService.fetchAsync(baseUrl + "/page" + i));
+        }
+        waitFor(() -> requests.get() == PER_HOST_LIMIT);
+        assertThat(pageFetchService.hostQueueCount()).isEqualTo(1);
+
+        // 前兩個卡在 server 期間其餘三個只能排隊：server 端同時處理的請求數 (maxActive) 不會超過上限
+        release.countDown();
+        for (int i = 0; i < pages.size(); i++) {
+            assertThat(pages.get(i).get(5, TimeUnit.SECONDS).getText()).isEqualTo("/page" + i + " 士林夜市");
+        }
+        assertThat(requests.get()).isEqualTo(pages.size());
+        assertThat(maxActive.get()).isEqualTo(PER_HOST_LIMIT);
+        waitFor(() -> pageFetchService.hostQueueCount() == 0);
+
+        // 移除後同一 host 的新請求會建立新的 queue
+        assertThat(pageFetchService.fetchAsync(baseUrl + "/again").get(5, TimeUnit.SECONDS).getText())
+                .isEqualTo("/again 士林夜市");
+    }
+
+    @Test
+    void nonHttpUrlsAreSkipped() throws Exception {
+        assertThat(pageFetchService.fetchAsync("ftp://example.com/file").get(1, TimeUnit.SECONDS).isEmpty()).isTrue();
+        assertThat(requests.get()).isEqualTo(0);
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.holds()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not reached in 5 seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.searchengine.service;
+
+import com.example.searchengine.model.Keyword;
+import com.example.searchengine.model.RootPageResult;
+import com.example.searchengine.service.SearchResultCache.QueryKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SearchResultCache：QueryKey 正規化、同一查詢只算一次、每個請求的 future 各自取消、部分結果較短的 TTL
+ */
+class SearchResultCacheTest {
+
+    private static final QueryKey KEY = QueryKey.of(
+            Arrays.asList(new Keyword("士林夜市", 5), new Keyword("雞排", 3)), "夜市 美食");
+
+    private SearchResultCache cache;
+    private AtomicInteger computations;
+    private CompletableFuture<List<RootPageResult>> computation;
+
+    @BeforeEach
+    void setUp() {
+        // 不會用到背景 refresh，RootPageScorer 傳 null
+        cache = new SearchResultCache(null, 100, 600, 15, 3600, 5000);
+        computations = new AtomicInteger();
+    }
+
+    @Test
+    void queryKeyIgnoresOrderCaseAndSurroundingSpaces() {
+        QueryKey reordered = QueryKey.of(
+                Arrays.asList(new Keyword(" 雞排", 3), new Keyword("士林夜市 ", 5)), "夜市 美食");
+        QueryKey english = QueryKey.of(Collections.singletonList(new Keyword("Night Market", 2)), "");
+
+        assertThat(reordered).isEqualTo(KEY);
+        assertThat(reordered.hashCode()).isEqualTo(KEY.hashCode());
+        assertThat(QueryKey.of(Collections.singletonList(new Keyword("night MARKET", 2)), "")).isEqualTo(english);
+    }
+
+    @Test
+    void queryKeyKeepsWeightsAndSuffix() {
+        assertThat(QueryKey.of(Arrays.asList(new Keyword("士林夜市", 4), new Keyword("雞排", 3)), "夜市 美食"))
+                .isNotEqualTo(KEY);
+        assertThat(QueryKey.of(Arrays.asList(new Keyword("士林夜市", 5), new Keyword("雞排", 3)), ""))
+                .isNotEqualTo(KEY);
+        assertThat(QueryKey.of(Collections.singletonList(new Keyword("士林夜市", 5)), "夜市 美食"))
+                .isNotEqualTo(KEY);
+    }
+
+    @Test
+    void googleQueryKeepsTheOriginalKeywords() {
+        QueryKey reordered = QueryKey.of(
+                Arrays.asList(new Keyword("雞排", 3), new Keyword("士林夜市", 5)), "夜市 美食");
+
+        // 與 PrefetchedSearch 送出的字串相同：原本順序的關鍵字 + 附加字串
+        assertThat(KEY.getGoogleQuery()).isEqualTo("士林夜市 雞排" + "夜市 美食");
+        assertThat(reordered.getGoogleQuery()).isEqualTo("雞排 士林夜市" + "夜市 美食");
+        assertThat(KEY.getKeywords().get(0).getWord()).isEqualTo("士林夜市");
+    }
+
+    @Test
+    void containsGoogleQueryIncludesRunningComputations() {
+        cache.get(KEY, this::compute);
+
+        assertThat(cache.containsGoogleQuery(KEY.getGoogleQuery())).isTrue();
+        assertThat(cache.containsGoogleQuery("士林夜市 雞排")).isFalse();
+    }
+
+    @Test
+    void partialResultsExpireBeforeCompleteOnes() {
+        AtomicLong nanos = new AtomicLong();
+        cache = new SearchResultCache(null, 100, 600, 15, 3600, 5000, nanos::get);
+        QueryKey partialKey = QueryKey.of(Collections.singletonList(new Keyword("饒河街夜市", 5)), "");
+        cache.get(KEY, this::compute);
+        computation.complete(Collections.singletonList(result(false)));
+        cache.get(partialKey, this::compute);
+        computation.complete(Arrays.asList(result(false), result(true)));
+        assertThat(computations.get()).isEqualTo(2);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(16));
+
+        cache.get(KEY, this::compute);
+        assertThat(computations.get()).isEqualTo(2);
+        cache.get(partialKey, this::compute);
+        assertThat(computations.get()).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentRequestsShareOneComputation() {
+        CompletableFuture<List<RootPageResult>> first = cache.get(KEY, this::compute);
+        CompletableFuture<List<RootPageResult>> second = cache.get(KEY, this::compute);
+        List<RootPageResult> results = Collections.singletonList(result(false));
+        computation.complete(results);
+
+        assertThat(computations.get()).isEqualTo(1);
+        assertThat(first.join()).isSameAs(results);
+        assertThat(second.join()).isSameAs(results);
+        assertThat(cache.get(KEY, this::compute).join()).isSameAs(results);
+        assertThat(computations.get()).isEqualTo(1);
+    }
+
+    @Test
+    void cancellingOneRequestKeepsTheComputationForTheOthers() {
+        CompletableFuture<List<RootPageResult>> first = cache.get(KEY, this::compute);
+        CompletableFuture<List<RootPageResult>> second = cache.get(KEY, this::compute);
+
+        first.cancel(true);
+
+        assertThat(computation.isCancelled()).isFalse();
+        List<RootPageResult> results = Collections.singletonList(result(false));
+        computation.complete(results);
+        assertThat(second.join()).isSameAs(results);
+    }
+
+    @Test
+    void cancellingEveryRequestCancelsTheComputation() {
+        CompletableFuture<List<RootPageResult>> first = cache.get(KEY, this::compute);
+        CompletableFuture<List<RootPageResult>> second = cache.get(KEY, this::compute);
+        CompletableFuture<List<RootPageResult>> abandoned = computation;
+
+        first.cancel(true);
+        second.cancel(true);
+
+        assertThat(abandoned.isCancelled()).isTrue();
+        // 下一個請求重新計算
+        cache.get(KEY, this::compute);
+        assertThat(computations.get()).isEqualTo(2);
+        assertThat(computation).isNotSameAs(abandoned);
+    }
+
+    @Test
+    void cancellingACachedResultDoesNotPoisonTheCache() {
+        cache.get(KEY, this::compute);
+        List<RootPageResult> results = Collections.singletonList(result(false));
+        computation.complete(results);
+
+        CompletableFuture<List<RootPageResult>> hit = cache.get(KEY, this::compute);
+        hit.cancel(true);
+
+        assertThat(cache.get(KEY, this::compute).join()).isSameAs(results);
+        assertThat(computations.get()).isEqualTo(1);
+    }
+
+    private CompletableFuture<List<RootPageResult>> compute(QueryKey key) {
+        computations.incrementAndGet();
+        computation = new CompletableFuture<>();
+        return computation;
+    }
+
+    private static RootPageResult result(boolean cutOff) {
+        return new RootPageResult("士林夜市", "https://example.com/", 10, "", new HashMap<>(), cutOff);
+    }
+}
@@ -3,6 +3,7 @@ from ckip_transformers.nlp import CkipWordSegmenter, CkipPosTagger
 from contextlib import redirect_stdout, redirect_stderr
 import os
 import sys
+from concurrent.futures import ThreadPoolExecutor
 import voyageai
 
 from fetch_google import fetch_google_result_text
@@ -12,6 +13,10 @@ app = Flask(__name__)
 
 ws_driver = None
 pos_driver = None
+voyage_client = None
+
+# /rerank_batch 同時送給 VoyageAI 的請求數
+RERANK_BATCH_WORKERS = 8
 
 def initialize_ckip_drivers():
     global ws_driver, pos_driver
@@ -42,8 +47,15 @@ def silent_call_ckip_v2(question):
         sys.stderr = original_stderr
     return ws, pos
 
+def get_voyage_client(api_key):
+    # 共用同一個 client (連線重複使用)
+    global voyage_client
+    if voyage_client is None:
+        voyage_client = voyageai.Client(api_key=api_key)
+    return voyage_client
+
 def rerank_with_voyage(query, documents, api_key):
-    vo = voyageai.Client(api_key=api_key)
+    vo = get_voyage_client(api_key)
 
     # 調用 VoyageAI API 進行重排序
     reranking = vo.rerank(query, documents, model='rerank-2', top_k=20)
@@ -100,6 +112,26 @@ def rerank():
     except Exception as e:
         return jsonify({"error": str(e)}), 500
 
+@app.route('/rerank_batch', methods=['POST'])
+def rerank_batch():
+    # 同一組 documents 對多個 query 做重排序；回傳與 queries 同順序的結果
+    data = request.get_json()
+    if not data or 'queries' not in data or 'documents' not in data:
+        return jsonify({"error": "Missing 'queries' or 'documents' in request body."}), 400
+
+    queries = data['queries']
+    documents = data['documents']
+
+    def rerank_one(query):
+        try:
+            return {"query": query, "ranked_documents": rerank_with_voyage(query, documents, voyage_api_key)}
+        except Exception as e:
+            return {"query": query, "error": str(e)}
+
+    with ThreadPoolExecutor(max_workers=RERANK_BATCH_WORKERS) as executor:
+        results = list(executor.map(rerank_one, queries))
+    return jsonify({"results": results})
+
 if __name__ == '__main__':
     initialize_ckip_drivers()
 
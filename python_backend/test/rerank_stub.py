@@ -0,0 +1,46 @@
+# 本機測試用的 reranker 替身：提供與 flask_app.py 相同的 /rerank 與 /rerank_batch，
+# 不需要 VoyageAI API key 與 CKIP 模型，分數以字元 bigram 相似度計算。
+#
+# 用法：python test/rerank_stub.py [port]   (預設 5000)
+import sys
+from flask import Flask, request, jsonify
+
+app = Flask(__name__)
+
+TOP_K = 20
+
+def bigrams(text):
+    text = text.replace("台", "臺")
+    if len(text) < 2:
+        return {text}
+    return {text[i:i + 2] for i in range(len(text) - 1)}
+
+def similarity(query, document):
+    q, d = bigrams(query), bigrams(document)
+    if not q or not d:
+        return 0.0
+    return 2.0 * len(q & d) / (len(q) + len(d))
+
+def rerank_local(query, documents):
+    ranked = sorted(documents, key=lambda doc: similarity(query, doc), reverse=True)[:TOP_K]
+    return [{"document": doc, "score": similarity(query, doc)} for doc in ranked]
+
+@app.route('/rerank', methods=['POST'])
+def rerank():
+    data = request.get_json()
+    if not data or 'query' not in data or 'documents' not in data:
+        return jsonify({"error": "Missing 'query' or 'documents' in request body."}), 400
+    return jsonify({"ranked_documents": rerank_local(data['query'], data['documents'])})
+
+@app.route('/rerank_batch', methods=['POST'])
+def rerank_batch():
+    data = request.get_json()
+    if not data or 'queries' not in data or 'documents' not in data:
+        return jsonify({"error": "Missing 'queries' or 'documents' in request body."}), 400
+    documents = data['documents']
+    results = [{"query": q, "ranked_documents": rerank_local(q, documents)} for q in data['queries']]
+    return jsonify({"results": results})
+
+if __name__ == '__main__':
+    port = int(sys.argv[1]) if len(sys.argv) > 1 else 5000
+    app.run(host='127.0.0.1', port=port, threaded=True)